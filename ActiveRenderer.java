@@ -0,0 +1,170 @@
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code ActiveRenderer} class draws the game onto a {@code Canvas} using a
+ * {@code BufferStrategy}, from its own render thread, instead of asking Swing to
+ * repaint the panels on the Event Dispatch Thread. Frames are drawn at a steady
+ * rate, and are never delayed or merged by the repaint manager. The drawing
+ * itself is done by {@code BoardPanel} and {@code SidePanel}.
+ *
+ */
+public class ActiveRenderer extends Canvas implements Runnable {
+
+	/**
+	 * Serial Version UID.
+	 */
+	private static final long serialVersionUID = -3408126347531893047L;
+
+	/**
+	 * The frame rate used when the refresh rate of the screen isn't known.
+	 */
+	private static final int DEFAULT_FPS = 60;
+
+	/**
+	 * Draws the board.
+	 */
+	private final BoardPanel board;
+
+	/**
+	 * Draws the side panel.
+	 */
+	private final SidePanel side;
+
+	/**
+	 * The snapshots of the game's state. One is acquired per frame and used to draw
+	 * both panels.
+	 */
+	private final SnapshotBuffer snapshots;
+
+	/**
+	 * The number of nanoseconds per frame.
+	 */
+	private long nanosPerFrame;
+
+	/**
+	 * The render thread, or null if it isn't running.
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * Creates a new active renderer for the given panels. The panels don't need to
+	 * be added to any window, they are only used to draw.
+	 * @param board The board to draw.
+	 * @param side The side panel to draw.
+	 * @param snapshots The snapshots of the game's state to draw.
+	 */
+	public ActiveRenderer(BoardPanel board, SidePanel side, SnapshotBuffer snapshots) {
+		this.board = board;
+		this.side = side;
+		this.snapshots = snapshots;
+
+		setPreferredSize(new Dimension(BoardPanel.PANEL_WIDTH + SidePanel.PANEL_WIDTH, BoardPanel.PANEL_HEIGHT));
+		setIgnoreRepaint(true);
+
+		/*
+		 * The keyboard is read by the window, so the canvas shouldn't steal its focus.
+		 */
+		setFocusable(false);
+	}
+
+	/**
+	 * Creates the buffer strategy and starts the render thread. The canvas must
+	 * already be displayed in a visible window.
+	 */
+	public void start() {
+		createBufferStrategy(2);
+
+		/*
+		 * Render at the refresh rate of the screen when it's known.
+		 */
+		int fps = DEFAULT_FPS;
+		GraphicsConfiguration config = getGraphicsConfiguration();
+		if(config != null) {
+			int refresh = config.getDevice().getDisplayMode().getRefreshRate();
+			if(refresh != DisplayMode.REFRESH_RATE_UNKNOWN) {
+				fps = refresh;
+			}
+		}
+		this.nanosPerFrame = 1000000000L / fps;
+
+		Thread thread = new Thread(this, "Render");
+		thread.setDaemon(true);
+		this.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the render thread.
+	 */
+	public void stop() {
+		Thread thread = this.thread;
+		this.thread = null;
+		if(thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		BufferStrategy strategy = getBufferStrategy();
+		long nextFrame = System.nanoTime();
+
+		while(thread == Thread.currentThread()) {
+			renderFrame(strategy);
+
+			/*
+			 * Wait for the next frame. If we've fallen behind, start again from now
+			 * rather than rendering a burst of frames to catch up.
+			 */
+			nextFrame += nanosPerFrame;
+			long wait = nextFrame - System.nanoTime();
+			if(wait > 0) {
+				LockSupport.parkNanos(wait);
+			} else {
+				nextFrame = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Draws a single frame and shows it. The buffer strategy's contents can be
+	 * lost at any time (for example if the display mode changes), in which case
+	 * the frame is simply drawn again.
+	 * @param strategy The buffer strategy.
+	 */
+	private void renderFrame(BufferStrategy strategy) {
+		GraphicsConfiguration config = getGraphicsConfiguration();
+		GameSnapshot snapshot = snapshots.acquire();
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					Graphics boardGraphics = g.create(0, 0, BoardPanel.PANEL_WIDTH, BoardPanel.PANEL_HEIGHT);
+					board.render(boardGraphics, config, snapshot);
+					boardGraphics.dispose();
+
+					Graphics sideGraphics = g.create(BoardPanel.PANEL_WIDTH, 0, SidePanel.PANEL_WIDTH, BoardPanel.PANEL_HEIGHT);
+					side.render(sideGraphics, config, snapshot);
+					sideGraphics.dispose();
+				} finally {
+					g.dispose();
+				}
+			} while(strategy.contentsRestored());
+			strategy.show();
+		} while(strategy.contentsLost());
+
+		/*
+		 * Make sure the frame is actually sent to the screen now, rather than
+		 * whenever the windowing system decides to flush it.
+		 */
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+}
@@ -0,0 +1,351 @@
+import java.util.Arrays;
+
+/**
+ * The {@code Board} class holds the tiles that make up the game grid and
+ * implements the rules for placing pieces on it and clearing lines. It has
+ * no dependencies on Swing, so it can be used without a display.
+ */
+public class Board {
+	
+	/**
+	 * The number of columns on the board.
+	 */
+	public static final int COL_COUNT = 10;
+		
+	/**
+	 * The number of visible rows on the board.
+	 */
+	public static final int VISIBLE_ROW_COUNT = 20;
+	
+	/**
+	 * The number of rows that are hidden from view.
+	 */
+	public static final int HIDDEN_ROW_COUNT = 2;
+	
+	/**
+	 * The total number of rows that the board contains.
+	 */
+	public static final int ROW_COUNT = VISIBLE_ROW_COUNT + HIDDEN_ROW_COUNT;
+	
+	/**
+	 * The bitmask of a row in which every column is occupied.
+	 */
+	private static final int FULL_ROW = (1 << COL_COUNT) - 1;
+	
+	/**
+	 * The tiles that make up the board. This is only used to know what color
+	 * each tile should be drawn in, occupancy is tracked by {@code rows}.
+	 */
+	private TileType[][] tiles;
+	
+	/**
+	 * The occupancy bitboard. Each row is represented by a single int, where
+	 * bit {@code n} is set if column {@code n} of that row is occupied.
+	 */
+	private int[] rows;
+	
+	/**
+	 * The rows that were removed by the last call to {@code checkLines}.
+	 */
+	private int clearedRows;
+	
+	/**
+	 * The surface of each column, which is the row of the highest occupied tile
+	 * in that column, or {@code ROW_COUNT} if the column is empty.
+	 */
+	private int[] surface;
+	
+	/**
+	 * Creates a new, empty Board.
+	 */
+	public Board() {
+		this.tiles = new TileType[ROW_COUNT][COL_COUNT];
+		this.rows = new int[ROW_COUNT];
+		this.surface = new int[COL_COUNT];
+		Arrays.fill(surface, ROW_COUNT);
+	}
+	
+	/**
+	 * Resets the board and clears away any tiles.
+	 */
+	public void clear() {
+		/*
+		 * Loop through every tile index and set it's value
+		 * to null to clear the board.
+		 */
+		for(int i = 0; i < ROW_COUNT; i++) {
+			for(int j = 0; j < COL_COUNT; j++) {
+				tiles[i][j] = null;
+			}
+			rows[i] = 0;
+		}
+		Arrays.fill(surface, ROW_COUNT);
+	}
+	
+	/**
+	 * Determines whether or not a piece can be placed at the coordinates.
+	 * @param type THe type of piece to use.
+	 * @param x The x coordinate of the piece.
+	 * @param y The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return Whether or not the position is valid.
+	 */
+	public boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
+				
+		//Ensure the piece is in a valid column.
+		if(x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= COL_COUNT) {
+			return false;
+		}
+		
+		//Ensure the piece is in a valid row.
+		if(y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= ROW_COUNT) {
+			return false;
+		}
+		
+		/*
+		 * Shift each row of the piece over to the x coordinate and see if it overlaps
+		 * the matching row of the bitboard. Empty rows at the top and bottom of the piece
+		 * can be skipped, as they can never conflict with anything.
+		 * 
+		 * Note: It's fine to shift right when x is negative because we've already checked
+		 * that the columns being shifted out are empty.
+		 */
+		int last = type.getDimension() - type.getBottomInset(rotation);
+		for(int row = type.getTopInset(rotation); row <= last; row++) {
+			int mask = type.getRowMask(row, rotation);
+			if((((x < 0) ? mask >>> -x : mask << x) & rows[y + row]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds a piece to the game board. Note: Doesn't check for existing pieces,
+	 * and will overwrite them if they exist.
+	 * @param type The type of piece to place.
+	 * @param x The x coordinate of the piece.
+	 * @param y The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 */
+	public void addPiece(TileType type, int x, int y, int rotation) {
+		/*
+		 * Loop through every tile within the piece and add it
+		 * to the board.
+		 */
+		for(int i = 0; i < type.getTileCount(); i++) {
+			int col = type.getTileX(i, rotation) + x;
+			int row = type.getTileY(i, rotation) + y;
+			setTile(col, row, type);
+		}
+	}
+	
+	/**
+	 * Calculates how many rows a piece can fall from its current position before
+	 * it lands on the floor or on another tile.
+	 * 
+	 * As long as the piece is above the surface of every column it covers, every
+	 * cell between its skirt and the surface is empty, so the distance is simply the
+	 * smallest gap between the two. Only a piece that has been slid underneath an
+	 * overhang needs to be checked one row at a time.
+	 * @param type The type of piece.
+	 * @param x The x coordinate of the piece.
+	 * @param y The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return The number of rows the piece can fall.
+	 */
+	public int getDropDistance(TileType type, int x, int y, int rotation) {
+		int distance = ROW_COUNT;
+		int end = type.getDimension() - type.getRightInset(rotation);
+		for(int col = type.getLeftInset(rotation); col <= end; col++) {
+			int skirt = type.getSkirt(col, rotation);
+			if(skirt >= 0) {
+				int gap = surface[x + col] - (y + skirt) - 1;
+				if(gap < 0) {
+					return scanDropDistance(type, x, y, rotation);
+				}
+				distance = Math.min(distance, gap);
+			}
+		}
+		return distance;
+	}
+	
+	/**
+	 * Calculates how many rows a piece can fall by moving it down one row at a
+	 * time until it collides with something.
+	 * @param type The type of piece.
+	 * @param x The x coordinate of the piece.
+	 * @param y The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return The number of rows the piece can fall.
+	 */
+	private int scanDropDistance(TileType type, int x, int y, int rotation) {
+		int distance = 0;
+		while(isValidAndEmpty(type, x, y + distance + 1, rotation)) {
+			distance++;
+		}
+		return distance;
+	}
+	
+	/**
+	 * Checks the rows covered by a piece that was just added to the board to see
+	 * if any lines have been cleared, and removes them from the game. Only these
+	 * rows need to be checked, as no other row could have changed.
+	 * @param type The type of piece that was added.
+	 * @param y The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return The number of lines that were cleared.
+	 * @see #getClearedRows()
+	 */
+	public int checkLines(TileType type, int y, int rotation) {
+		int first = y + type.getTopInset(rotation);
+		int last = y + type.getDimension() - type.getBottomInset(rotation);
+		
+		/*
+		 * Find every full row in a single sweep. A piece can cover at most
+		 * four rows, so the cleared rows fit comfortably into a bitmask.
+		 */
+		this.clearedRows = 0;
+		for(int row = first; row <= last; row++) {
+			if(rows[row] == FULL_ROW) {
+				clearedRows |= (1 << row);
+			}
+		}
+		
+		if(clearedRows != 0) {
+			compact(last);
+		}
+		return Integer.bitCount(clearedRows);
+	}
+	
+	/**
+	 * Removes the rows marked in {@code clearedRows} from the board, moving every
+	 * surviving row above them down to fill the gap. Each row is moved at most once,
+	 * and the arrays of the cleared rows are recycled as the new empty rows at the top.
+	 * @param last The lowest row that may have been cleared.
+	 */
+	private void compact(int last) {
+		TileType[][] recycled = new TileType[Integer.bitCount(clearedRows)][];
+		int count = 0;
+		
+		/*
+		 * Walk up from the lowest cleared row, copying each row that survives down
+		 * to the next free slot. Rows below the lowest cleared row never move.
+		 */
+		int write = last;
+		for(int read = last; read >= 0; read--) {
+			if((clearedRows & (1 << read)) != 0) {
+				recycled[count++] = tiles[read];
+				continue;
+			}
+			if(write != read) {
+				tiles[write] = tiles[read];
+				rows[write] = rows[read];
+			}
+			write--;
+		}
+		
+		/*
+		 * Whatever is left at the top of the board is now empty.
+		 */
+		for(int row = write; row >= 0; row--) {
+			TileType[] line = recycled[--count];
+			Arrays.fill(line, null);
+			tiles[row] = line;
+			rows[row] = 0;
+		}
+		
+		updateSurface();
+	}
+	
+	/**
+	 * Recalculates the surface of every column from the bitboard. Starting at the
+	 * top, the first row in which a column is occupied is that column's surface.
+	 */
+	private void updateSurface() {
+		Arrays.fill(surface, ROW_COUNT);
+		int remaining = FULL_ROW;
+		for(int row = 0; row < ROW_COUNT && remaining != 0; row++) {
+			int found = rows[row] & remaining;
+			remaining &= ~found;
+			while(found != 0) {
+				surface[Integer.numberOfTrailingZeros(found)] = row;
+				found &= found - 1;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the rows that were removed by the last call to {@code checkLines}.
+	 * Bit {@code n} is set if row {@code n} was cleared (using the row numbers
+	 * from before the board was compacted).
+	 * @return The bitmask of cleared rows.
+	 */
+	public int getClearedRows() {
+		return clearedRows;
+	}
+	
+	
+	/**
+	 * Gets the surface of a column, which is the row of the highest occupied
+	 * tile in that column.
+	 * @param x The column.
+	 * @return The surface row, or {@code ROW_COUNT} if the column is empty.
+	 */
+	public int getSurface(int x) {
+		return surface[x];
+	}
+	
+	/**
+	 * Checks to see if the tile is already occupied.
+	 * @param x The x coordinate to check.
+	 * @param y The y coordinate to check.
+	 * @return Whether or not the tile is occupied.
+	 */
+	public boolean isOccupied(int x, int y) {
+		return (rows[y] & (1 << x)) != 0;
+	}
+	
+	/**
+	 * Sets a tile located at the desired column and row.
+	 * @param x The column.
+	 * @param y The row.
+	 * @param type The value to set to the tile to, or null to empty it.
+	 */
+	public void setTile(int  x, int y, TileType type) {
+		tiles[y][x] = type;
+		if(type != null) {
+			rows[y] |= (1 << x);
+			surface[x] = Math.min(surface[x], y);
+		} else {
+			rows[y] &= ~(1 << x);
+			if(surface[x] == y) {
+				updateSurface();
+			}
+		}
+	}
+	
+	/**
+	 * Makes this board an exact copy of another board.
+	 * @param other The board to copy.
+	 */
+	public void copyFrom(Board other) {
+		for(int row = 0; row < ROW_COUNT; row++) {
+			System.arraycopy(other.tiles[row], 0, tiles[row], 0, COL_COUNT);
+		}
+		System.arraycopy(other.rows, 0, rows, 0, ROW_COUNT);
+		System.arraycopy(other.surface, 0, surface, 0, COL_COUNT);
+		this.clearedRows = other.clearedRows;
+	}
+		
+	/**
+	 * Gets a tile by it's column and row.
+	 * @param x The column.
+	 * @param y The row.
+	 * @return The tile.
+	 */
+	public TileType getTile(int x, int y) {
+		return tiles[y][x];
+	}
+
+}
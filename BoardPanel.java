@@ -1,13 +1,18 @@
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 
 import javax.swing.JPanel;
 
 /**
- * The {@code BoardPanel} class is responsible for displaying the game grid and
- * handling things related to the game board.
+ * The {@code BoardPanel} class is responsible for displaying the game grid,
+ * the current piece and its ghost. The rules of the board itself live in
+ * {@link Board}.
  * @author Kanak Negi
  *
  */
@@ -38,22 +43,22 @@ public class BoardPanel extends JPanel {
 	/**
 	 * The number of columns on the board.
 	 */
-	public static final int COL_COUNT = 10;
+	public static final int COL_COUNT = Board.COL_COUNT;
 		
 	/**
 	 * The number of visible rows on the board.
 	 */
-	private static final int VISIBLE_ROW_COUNT = 20;
+	private static final int VISIBLE_ROW_COUNT = Board.VISIBLE_ROW_COUNT;
 	
 	/**
 	 * The number of rows that are hidden from view.
 	 */
-	private static final int HIDDEN_ROW_COUNT = 2;
+	private static final int HIDDEN_ROW_COUNT = Board.HIDDEN_ROW_COUNT;
 	
 	/**
 	 * The total number of rows that the board contains.
 	 */
-	public static final int ROW_COUNT = VISIBLE_ROW_COUNT + HIDDEN_ROW_COUNT;
+	public static final int ROW_COUNT = Board.ROW_COUNT;
 	
 	/**
 	 * The number of pixels that a tile takes up.
@@ -96,187 +101,183 @@ public class BoardPanel extends JPanel {
 	private static final Font SMALL_FONT = new Font("Tahoma", Font.BOLD, 12);
 	
 	/**
-	 * The Tetris instance.
+	 * The font of the performance overlay.
 	 */
-	private Tetris tetris;
+	private static final Font METRICS_FONT = new Font("Monospaced", Font.PLAIN, 10);
 	
 	/**
-	 * The tiles that make up the board.
+	 * The distance between the lines of the performance overlay.
 	 */
-	private TileType[][] tiles;
+	private static final int METRICS_STRIDE = 12;
+	
+	/**
+	 * The height of the performance overlay, including the border.
+	 */
+	private static final int METRICS_HEIGHT = BORDER_WIDTH + (FrameMetrics.Phase.values().length + 2) * METRICS_STRIDE + METRICS_STRIDE / 2;
+	
+	/**
+	 * The background color of the performance overlay.
+	 */
+	private static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 160);
+	
+	/**
+	 * The game engine whose board is displayed. It's only used to find out what
+	 * changed, from the game loop's thread; painting uses {@code snapshots}.
+	 */
+	private GameEngine engine;
+	
+	/**
+	 * The snapshots of the engine's state that are drawn.
+	 */
+	private SnapshotBuffer snapshots;
+	
+	/**
+	 * The frame metrics, which also time painting this panel.
+	 */
+	private FrameMetrics metrics;
+	
+	/**
+	 * The pre-rendered tiles and ghost tiles.
+	 */
+	private TileSprites sprites;
+	
+	/**
+	 * The background grid, which never changes, so it is only drawn once.
+	 */
+	private CachedLayer grid;
+	
+	/**
+	 * The versions of the engine's state that were last repainted.
+	 */
+	private int boardVersion, pieceVersion, stateVersion;
+	
+	/**
+	 * The version of the metrics summary that was last repainted.
+	 */
+	private int metricsVersion;
+	
+	/**
+	 * The area covered by the current piece and its ghost when it was last repainted.
+	 */
+	private Rectangle pieceBounds;
 		
 	/**
 	 * Crates a new GameBoard instance.
-	 * @param tetris The Tetris instance to use.
+	 * @param engine The game engine to display.
+	 * @param snapshots The snapshots of the engine's state to draw.
+	 * @param metrics The frame metrics to record painting in and display.
 	 */
-	public BoardPanel(Tetris tetris) {
-		this.tetris = tetris;
-		this.tiles = new TileType[ROW_COUNT][COL_COUNT];
+	public BoardPanel(GameEngine engine, SnapshotBuffer snapshots, FrameMetrics metrics) {
+		this.engine = engine;
+		this.snapshots = snapshots;
+		this.metrics = metrics;
+		this.sprites = new TileSprites(TILE_SIZE, SHADE_WIDTH);
+		this.pieceBounds = new Rectangle();
+		this.stateVersion = engine.getStateVersion() - 1;
+		this.grid = new CachedLayer(COL_COUNT * TILE_SIZE + 1, VISIBLE_ROW_COUNT * TILE_SIZE + 1, Transparency.BITMASK, BoardPanel::drawGrid);
 		
 		setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
 		setBackground(Color.BLACK);
 	}
 	
 	/**
-	 * Resets the board and clears away any tiles.
+	 * Requests a repaint of only the parts of the board that have changed since the
+	 * last time this was called: the rows of the board that changed, and the area
+	 * the current piece and its ghost moved from and to, and the performance overlay
+	 * when its values change. If nothing has changed, nothing is repainted, so the
+	 * static screens (paused, new game and game over) cost nothing.
+	 * This must be called from the game loop's thread, after the latest snapshot has
+	 * been published.
 	 */
-	public void clear() {
+	public void repaintChanges() {
 		/*
-		 * Loop through every tile index and set it's value
-		 * to null to clear the board.
+		 * Repaint the performance overlay if it was shown, hidden or updated.
 		 */
-		for(int i = 0; i < ROW_COUNT; i++) {
-			for(int j = 0; j < COL_COUNT; j++) {
-				tiles[i][j] = null;
-			}
-		}
-	}
-	
-	/**
-	 * Determines whether or not a piece can be placed at the coordinates.
-	 * @param type THe type of piece to use.
-	 * @param x The x coordinate of the piece.
-	 * @param y The y coordinate of the piece.
-	 * @param rotation The rotation of the piece.
-	 * @return Whether or not the position is valid.
-	 */
-	public boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
-				
-		//Ensure the piece is in a valid column.
-		if(x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= COL_COUNT) {
-			return false;
-		}
-		
-		//Ensure the piece is in a valid row.
-		if(y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= ROW_COUNT) {
-			return false;
+		if(metrics.getSummaryVersion() != metricsVersion) {
+			this.metricsVersion = metrics.getSummaryVersion();
+			repaint(0, 0, PANEL_WIDTH, METRICS_HEIGHT);
 		}
 		
 		/*
-		 * Loop through every tile in the piece and see if it conflicts with an existing tile.
-		 * 
-		 * Note: It's fine to do this even though it allows for wrapping because we've already
-		 * checked to make sure the piece is in a valid location.
+		 * If the game was paused, started or ended, the whole board looks different.
 		 */
-		for(int col = 0; col < type.getDimension(); col++) {
-			for(int row = 0; row < type.getDimension(); row++) {
-				if(type.isTile(col, row, rotation) && isOccupied(x + col, y + row)) {
-					return false;
-				}
-			}
+		if(engine.getStateVersion() != stateVersion) {
+			this.stateVersion = engine.getStateVersion();
+			this.boardVersion = engine.getBoardVersion();
+			this.pieceVersion = engine.getPieceVersion();
+			updatePieceBounds();
+			repaint();
+			return;
 		}
-		return true;
-	}
-	
-	/**
-	 * Adds a piece to the game board. Note: Doesn't check for existing pieces,
-	 * and will overwrite them if they exist.
-	 * @param type The type of piece to place.
-	 * @param x The x coordinate of the piece.
-	 * @param y The y coordinate of the piece.
-	 * @param rotation The rotation of the piece.
-	 */
-	public void addPiece(TileType type, int x, int y, int rotation) {
+		
 		/*
-		 * Loop through every tile within the piece and add it
-		 * to the board only if the boolean that represents that
-		 * tile is set to true.
+		 * Repaint the rows that changed. If we've missed more than one change, we no
+		 * longer know which rows they were, so the whole board is repainted.
 		 */
-		for(int col = 0; col < type.getDimension(); col++) {
-			for(int row = 0; row < type.getDimension(); row++) {
-				if(type.isTile(col, row, rotation)) {
-					setTile(col + x, row + y, type);
-				}
+		if(engine.getBoardVersion() != boardVersion) {
+			int rows = (engine.getBoardVersion() - boardVersion == 1) ? engine.getChangedRows() : -1;
+			this.boardVersion = engine.getBoardVersion();
+			if(rows != 0) {
+				int first = Integer.numberOfTrailingZeros(rows);
+				int last = Math.min(ROW_COUNT - 1, 31 - Integer.numberOfLeadingZeros(rows));
+				repaint(0, BORDER_WIDTH + (first - HIDDEN_ROW_COUNT) * TILE_SIZE, PANEL_WIDTH, (last - first + 1) * TILE_SIZE);
 			}
 		}
-	}
-	
-	/**
-	 * Checks the board to see if any lines have been cleared, and
-	 * removes them from the game.
-	 * @return The number of lines that were cleared.
-	 */
-	public int checkLines() {
-		int completedLines = 0;
 		
 		/*
-		 * Here we loop through every line and check it to see if
-		 * it's been cleared or not. If it has, we increment the
-		 * number of completed lines and check the next row.
-		 * 
-		 * The checkLine function handles clearing the line and
-		 * shifting the rest of the board down for us.
+		 * Repaint where the piece was and where it is now.
 		 */
-		for(int row = 0; row < ROW_COUNT; row++) {
-			if(checkLine(row)) {
-				completedLines++;
-			}
+		if(engine.getPieceVersion() != pieceVersion) {
+			this.pieceVersion = engine.getPieceVersion();
+			repaint(pieceBounds);
+			updatePieceBounds();
+			repaint(pieceBounds);
 		}
-		return completedLines;
 	}
-			
+	
 	/**
-	 * Checks whether or not {@code row} is full.
-	 * @param line The row to check.
-	 * @return Whether or not this row is full.
+	 * Calculates the area covered by the current piece and its ghost, which
+	 * spans from the top of the piece down to the bottom of the ghost.
 	 */
-	private boolean checkLine(int line) {
-		/*
-		 * Iterate through every column in this row. If any of them are
-		 * empty, then the row is not full.
-		 */
-		for(int col = 0; col < COL_COUNT; col++) {
-			if(!isOccupied(col, line)) {
-				return false;
-			}
+	private void updatePieceBounds() {
+		TileType type = engine.getPieceType();
+		if(type == null || !engine.isPlaying()) {
+			pieceBounds.setBounds(0, 0, 0, 0);
+			return;
 		}
 		
-		/*
-		 * Since the line is filled, we need to 'remove' it from the game.
-		 * To do this, we simply shift every row above it down by one.
-		 */
-		for(int row = line - 1; row >= 0; row--) {
-			for(int col = 0; col < COL_COUNT; col++) {
-				setTile(col, row + 1, getTile(col, row));
-			}
-		}
-		return true;
+		int rotation = engine.getPieceRotation();
+		int left = engine.getPieceCol() + type.getLeftInset(rotation);
+		int right = engine.getPieceCol() + type.getDimension() - type.getRightInset(rotation);
+		int top = engine.getPieceRow() + type.getTopInset(rotation);
+		int bottom = engine.getPieceRow() + engine.getDropDistance() + type.getDimension() - type.getBottomInset(rotation);
+		pieceBounds.setBounds(BORDER_WIDTH + left * TILE_SIZE, BORDER_WIDTH + (top - HIDDEN_ROW_COUNT) * TILE_SIZE,
+				(right - left + 1) * TILE_SIZE, (bottom - top + 1) * TILE_SIZE);
 	}
 	
-	
-	/**
-	 * Checks to see if the tile is already occupied.
-	 * @param x The x coordinate to check.
-	 * @param y The y coordinate to check.
-	 * @return Whether or not the tile is occupied.
-	 */
-	private boolean isOccupied(int x, int y) {
-		return tiles[y][x] != null;
+	@Override
+	public void paintComponent(Graphics g) {
+		/*
+		 * The snapshot is acquired once per paint pass, which both panels share when
+		 * they're painted together, so they always show the same state.
+		 */
+		render(g, getGraphicsConfiguration(), snapshots.acquire(EventQueue.getCurrentEvent()));
 	}
 	
 	/**
-	 * Sets a tile located at the desired column and row.
-	 * @param x The column.
-	 * @param y The row.
-	 * @param type The value to set to the tile to.
+	 * Draws the entire board, including its background. This is used both to paint
+	 * the panel and by {@code ActiveRenderer}, which draws onto its own buffer.
+	 * Everything is drawn from the snapshot, never from the engine itself, which may
+	 * be in the middle of an update.
+	 * @param g The graphics object. Its translation will be changed.
+	 * @param config The graphics configuration being drawn to, or null if it isn't known.
+	 * @param snapshot The state of the game to draw.
 	 */
-	private void setTile(int  x, int y, TileType type) {
-		tiles[y][x] = type;
-	}
+	public void render(Graphics g, GraphicsConfiguration config, GameSnapshot snapshot) {
+		long start = metrics.start();
 		
-	/**
-	 * Gets a tile by it's column and row.
-	 * @param x The column.
-	 * @param y The row.
-	 * @return The tile.
-	 */
-	private TileType getTile(int x, int y) {
-		return tiles[y][x];
-	}
-	
-	@Override
-	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, PANEL_WIDTH, PANEL_HEIGHT);
 		
 		//This helps simplify the positioning of things.
 		g.translate(BORDER_WIDTH, BORDER_WIDTH);
@@ -284,12 +285,12 @@ public class BoardPanel extends JPanel {
 		/*
 		 * Draw the board differently depending on the current game state.
 		 */
-		if(tetris.isPaused()) {
+		if(snapshot.isPaused()) {
 			g.setFont(LARGE_FONT);
 			g.setColor(Color.WHITE);
 			String msg = "PAUSA";
 			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, CENTER_Y);
-		} else if(tetris.isNewGame() || tetris.isGameOver()) {
+		} else if(snapshot.isNewGame() || snapshot.isGameOver()) {
 			g.setFont(LARGE_FONT);
 			g.setColor(Color.WHITE);
 			
@@ -298,19 +299,21 @@ public class BoardPanel extends JPanel {
 			 * we can handle them together and just use a ternary operator to change
 			 * the messages that are displayed.
 			 */
-			String msg = tetris.isNewGame() ? "TETRIS-AFROASIATICO" : "GAME OVER";
+			String msg = snapshot.isNewGame() ? "TETRIS-AFROASIATICO" : "GAME OVER";
 			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 150);
 			g.setFont(SMALL_FONT);
-			msg = "Press ENTER para jugar" + (tetris.isNewGame() ? "" : " OTRA VEZ");
+			msg = "Press ENTER para jugar" + (snapshot.isNewGame() ? "" : " OTRA VEZ");
 			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 300);
 		} else {
+			Board board = snapshot.getBoard();
+			sprites.validate(config);
 			
 			/*
 			 * Draw the tiles onto the board.
 			 */
 			for(int x = 0; x < COL_COUNT; x++) {
 				for(int y = HIDDEN_ROW_COUNT; y < ROW_COUNT; y++) {
-					TileType tile = getTile(x, y);
+					TileType tile = board.getTile(x, y);
 					if(tile != null) {
 						drawTile(tile, x * TILE_SIZE, (y - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
 					}
@@ -323,59 +326,39 @@ public class BoardPanel extends JPanel {
 			 * part of the board, it would need to be removed every frame which
 			 * would just be slow and confusing.
 			 */
-			TileType type = tetris.getPieceType();
-			int pieceCol = tetris.getPieceCol();
-			int pieceRow = tetris.getPieceRow();
-			int rotation = tetris.getPieceRotation();
+			TileType type = snapshot.getPieceType();
+			int pieceCol = snapshot.getPieceCol();
+			int pieceRow = snapshot.getPieceRow();
+			int rotation = snapshot.getPieceRotation();
 			
 			//Draw the piece onto the board.
-			for(int col = 0; col < type.getDimension(); col++) {
-				for(int row = 0; row < type.getDimension(); row++) {
-					if(pieceRow + row >= 2 && type.isTile(col, row, rotation)) {
-						drawTile(type, (pieceCol + col) * TILE_SIZE, (pieceRow + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
-					}
+			for(int i = 0; i < type.getTileCount(); i++) {
+				int col = type.getTileX(i, rotation);
+				int row = type.getTileY(i, rotation);
+				if(pieceRow + row >= 2) {
+					drawTile(type, (pieceCol + col) * TILE_SIZE, (pieceRow + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
 				}
 			}
 			
 			/*
-			 * Draw the ghost (semi-transparent piece that shows where the current piece will land). I couldn't think of
-			 * a better way to implement this so it'll have to do for now. We simply take the current position and move
-			 * down until we hit a row that would cause a collision.
+			 * Draw the ghost (semi-transparent piece that shows where the current piece will land). The
+			 * board tracks the surface of each column, so the landing row comes straight from the drop
+			 * distance rather than from testing every row below the piece.
 			 */
-			Color base = type.getBaseColor();
-			base = new Color(base.getRed(), base.getGreen(), base.getBlue(), 20);
-			for(int lowest = pieceRow; lowest < ROW_COUNT; lowest++) {
-				//If no collision is detected, try the next row.
-				if(isValidAndEmpty(type, pieceCol, lowest, rotation)) {					
-					continue;
-				}
-				
-				//Draw the ghost one row higher than the one the collision took place at.
-				lowest--;
-				
-				//Draw the ghost piece.
-				for(int col = 0; col < type.getDimension(); col++) {
-					for(int row = 0; row < type.getDimension(); row++) {
-						if(lowest + row >= 2 && type.isTile(col, row, rotation)) {
-							drawTile(base, base.brighter(), base.darker(), (pieceCol + col) * TILE_SIZE, (lowest + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
-						}
-					}
+			int lowest = pieceRow + snapshot.getDropDistance();
+			for(int i = 0; i < type.getTileCount(); i++) {
+				int col = type.getTileX(i, rotation);
+				int row = type.getTileY(i, rotation);
+				if(lowest + row >= 2) {
+					g.drawImage(sprites.getGhost(type), (pieceCol + col) * TILE_SIZE, (lowest + row - HIDDEN_ROW_COUNT) * TILE_SIZE, null);
 				}
-				
-				break;
 			}
 			
 			/*
 			 * Draw the background grid above the pieces (serves as a useful visual
 			 * for players, and makes the pieces look nicer by breaking them up.
 			 */
-			g.setColor(Color.DARK_GRAY);
-			for(int x = 0; x < COL_COUNT; x++) {
-				for(int y = 0; y < VISIBLE_ROW_COUNT; y++) {
-					g.drawLine(0, y * TILE_SIZE, COL_COUNT * TILE_SIZE, y * TILE_SIZE);
-					g.drawLine(x * TILE_SIZE, 0, x * TILE_SIZE, VISIBLE_ROW_COUNT * TILE_SIZE);
-				}
-			}
+			grid.draw(g, 0, 0, config);
 		}
 		
 		/*
@@ -383,53 +366,56 @@ public class BoardPanel extends JPanel {
 		 */
 		g.setColor(Color.WHITE);
 		g.drawRect(0, 0, TILE_SIZE * COL_COUNT, TILE_SIZE * VISIBLE_ROW_COUNT);
+		
+		/*
+		 * Draw the performance overlay over everything else, if it's enabled.
+		 */
+		if(metrics.isEnabled()) {
+			drawMetrics(g);
+		}
+		
+		metrics.record(FrameMetrics.Phase.PAINT_BOARD, start);
 	}
 	
 	/**
-	 * Draws a tile onto the board.
-	 * @param type The type of tile to draw.
-	 * @param x The column.
-	 * @param y The row.
+	 * Draws the latest metrics summary in the top corner of the board.
 	 * @param g The graphics object.
 	 */
-	private void drawTile(TileType type, int x, int y, Graphics g) {
-		drawTile(type.getBaseColor(), type.getLightColor(), type.getDarkColor(), x, y, g);
+	private void drawMetrics(Graphics g) {
+		String[] lines = metrics.getSummary();
+		g.setColor(METRICS_BACKGROUND);
+		g.fillRect(0, 0, TILE_SIZE * COL_COUNT, METRICS_HEIGHT - BORDER_WIDTH);
+		g.setFont(METRICS_FONT);
+		g.setColor(Color.WHITE);
+		for(int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], METRICS_STRIDE / 2, (i + 1) * METRICS_STRIDE);
+		}
+	}
+	
+	/**
+	 * Draws the background grid. Each line only needs to be drawn once, the
+	 * right and bottom edges are covered by the outline.
+	 * @param g The graphics object.
+	 */
+	private static void drawGrid(Graphics g) {
+		g.setColor(Color.DARK_GRAY);
+		for(int y = 0; y < VISIBLE_ROW_COUNT; y++) {
+			g.drawLine(0, y * TILE_SIZE, COL_COUNT * TILE_SIZE, y * TILE_SIZE);
+		}
+		for(int x = 0; x < COL_COUNT; x++) {
+			g.drawLine(x * TILE_SIZE, 0, x * TILE_SIZE, VISIBLE_ROW_COUNT * TILE_SIZE);
+		}
 	}
 	
 	/**
 	 * Draws a tile onto the board.
-	 * @param base The base color of tile.
-	 * @param light The light color of the tile.
-	 * @param dark The dark color of the tile.
+	 * @param type The type of tile to draw.
 	 * @param x The column.
 	 * @param y The row.
 	 * @param g The graphics object.
 	 */
-	private void drawTile(Color base, Color light, Color dark, int x, int y, Graphics g) {
-		
-		/*
-		 * Fill the entire tile with the base color.
-		 */
-		g.setColor(base);
-		g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
-		
-		/*
-		 * Fill the bottom and right edges of the tile with the dark shading color.
-		 */
-		g.setColor(dark);
-		g.fillRect(x, y + TILE_SIZE - SHADE_WIDTH, TILE_SIZE, SHADE_WIDTH);
-		g.fillRect(x + TILE_SIZE - SHADE_WIDTH, y, SHADE_WIDTH, TILE_SIZE);
-		
-		/*
-		 * Fill the top and left edges with the light shading. We draw a single line
-		 * for each row or column rather than a rectangle so that we can draw a nice
-		 * looking diagonal where the light and dark shading meet.
-		 */
-		g.setColor(light);
-		for(int i = 0; i < SHADE_WIDTH; i++) {
-			g.drawLine(x, y + i, x + TILE_SIZE - i - 1, y + i);
-			g.drawLine(x + i, y, x + i, y + TILE_SIZE - i - 1);
-		}
+	private void drawTile(TileType type, int x, int y, Graphics g) {
+		g.drawImage(sprites.getTile(type), x, y, null);
 	}
 
 }
\ No newline at end of file
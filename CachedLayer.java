@@ -0,0 +1,105 @@
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * La clase {@code CachedLayer} guarda algo que nunca cambia, como la rejilla del
+ * tablero o los rótulos del panel lateral, dibujado una sola vez en una imagen.
+ * Así cada fotograma solo tiene que copiar la imagen en vez de volver a dibujar
+ * cada línea y cada texto. Como en {@code TileSprites}, la imagen se vuelve a
+ * dibujar si cambia la configuración gráfica en la que se pinta.
+ *
+ */
+public class CachedLayer {
+
+	/**
+	 * El ancho de la capa.
+	 */
+	private final int width;
+
+	/**
+	 * El alto de la capa.
+	 */
+	private final int height;
+
+	/**
+	 * La transparencia de la capa (una de las constantes de {@code Transparency}).
+	 */
+	private final int transparency;
+
+	/**
+	 * Dibuja el contenido de la capa.
+	 */
+	private final Consumer<Graphics> painter;
+
+	/**
+	 * La configuración gráfica para la que se creó la imagen.
+	 */
+	private GraphicsConfiguration config;
+
+	/**
+	 * La capa ya dibujada, o null si aún no se ha dibujado.
+	 */
+	private Image image;
+
+	/**
+	 * Crea una nueva capa. No se dibuja nada hasta que se pinta por primera vez.
+	 * @param width El ancho de la capa.
+	 * @param height El alto de la capa.
+	 * @param transparency La transparencia de la capa.
+	 * @param painter Dibuja el contenido de la capa, empezando en 0, 0.
+	 */
+	public CachedLayer(int width, int height, int transparency, Consumer<Graphics> painter) {
+		this.width = width;
+		this.height = height;
+		this.transparency = transparency;
+		this.painter = painter;
+	}
+
+	/**
+	 * Pinta la capa, dibujándola antes si aún no se ha dibujado para esta
+	 * configuración gráfica.
+	 * @param g El objeto gráfico.
+	 * @param x La coordenada x en la que se pinta la capa.
+	 * @param y La coordenada y en la que se pinta la capa.
+	 * @param config La configuración gráfica, o null si no se conoce.
+	 */
+	public void draw(Graphics g, int x, int y, GraphicsConfiguration config) {
+		if(image == null || this.config != config) {
+			this.image = render(config);
+			this.config = config;
+		}
+		g.drawImage(image, x, y, null);
+	}
+
+	/**
+	 * Dibuja la capa en una imagen nueva.
+	 * @param config La configuración gráfica para la que se crea la imagen, o null.
+	 * @return La imagen.
+	 */
+	private Image render(GraphicsConfiguration config) {
+		BufferedImage image = (config != null) ? config.createCompatibleImage(width, height, transparency)
+				: new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			/*
+			 * El texto que se pinta directamente en un componente usa el suavizado del
+			 * escritorio, así que se usa el mismo aquí para que el texto guardado se vea igual.
+			 */
+			Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+			if(hints instanceof Map) {
+				g.addRenderingHints((Map<?, ?>) hints);
+			}
+			painter.accept(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+}
@@ -1,15 +1,23 @@
 /**
  * The {@code Clock} class is responsible for tracking the number of cycles
- * that have elapsed over time. 
+ * that have elapsed over time. All time is kept in whole nanoseconds, so the
+ * length of a cycle doesn't drift or round to the nearest millisecond. The
+ * time comes from a {@code TimeSource}, which is the computer's clock unless
+ * another one is given.
  * @author Kanak Negi
  *
  */
 public class Clock {
 	
 	/**
-	 * The number of milliseconds that make up one cycle.
+	 * Where the current time comes from.
 	 */
-	private float millisPerCycle;
+	private final TimeSource time;
+	
+	/**
+	 * The number of nanoseconds that make up one cycle.
+	 */
+	private long nanosPerCycle;
 	
 	/**
 	 * The last time that the clock was updated (used for calculating the
@@ -23,9 +31,14 @@ public class Clock {
 	private int elapsedCycles;
 	
 	/**
-	 * The amount of excess time towards the next elapsed cycle.
+	 * The most cycles that can be waiting to be polled.
+	 */
+	private int maxElapsedCycles;
+	
+	/**
+	 * The amount of excess time (in nanoseconds) towards the next elapsed cycle.
 	 */
-	private float excessCycles;
+	private long excessNanos;
 	
 	/**
 	 * Whether or not the clock is paused.
@@ -37,7 +50,19 @@ public class Clock {
 	 * @param cyclesPerSecond The number of cycles that elapse per second.
 	 */
 	public Clock(float cyclesPerSecond) {
+		this(cyclesPerSecond, TimeSource.SYSTEM);
+	}
+	
+	/**
+	 * Creates a new clock that gets the time from the given source, and sets
+	 * it's cycles-per-second.
+	 * @param cyclesPerSecond The number of cycles that elapse per second.
+	 * @param time Where to get the current time from.
+	 */
+	public Clock(float cyclesPerSecond, TimeSource time) {
+		this.time = time;
 		setCyclesPerSecond(cyclesPerSecond);
+		this.maxElapsedCycles = Integer.MAX_VALUE;
 		reset();
 	}
 	
@@ -46,7 +71,18 @@ public class Clock {
 	 * @param cyclesPerSecond The number of cycles per second.
 	 */
 	public void setCyclesPerSecond(float cyclesPerSecond) {
-		this.millisPerCycle = (1.0f / cyclesPerSecond) * 1000;
+		this.nanosPerCycle = Math.max(1L, Math.round(1000000000.0 / cyclesPerSecond));
+	}
+	
+	/**
+	 * Sets the most cycles that can be waiting to be polled. Any cycles beyond
+	 * that are dropped, so that if the clock isn't polled for a while (the game
+	 * stalls, for example) it doesn't catch up with a burst of cycles.
+	 * @param maxElapsedCycles The most cycles that can be waiting.
+	 */
+	public void setMaxElapsedCycles(int maxElapsedCycles) {
+		this.maxElapsedCycles = maxElapsedCycles;
+		this.elapsedCycles = Math.min(elapsedCycles, maxElapsedCycles);
 	}
 	
 	/**
@@ -56,7 +92,7 @@ public class Clock {
 	 */
 	public void reset() {
 		this.elapsedCycles = 0;
-		this.excessCycles = 0.0f;
+		this.excessNanos = 0L;
 		this.lastUpdate = getCurrentTime();
 		this.isPaused = false;
 	}
@@ -70,12 +106,12 @@ public class Clock {
 	public void update() {
 		//Get the current time and calculate the delta time.
 		long currUpdate = getCurrentTime();
-		float delta = (float)(currUpdate - lastUpdate) + excessCycles;
+		long delta = (currUpdate - lastUpdate) + excessNanos;
 		
 		//Update the number of elapsed and excess ticks if we're not paused.
 		if(!isPaused) {
-			this.elapsedCycles += (int)Math.floor(delta / millisPerCycle);
-			this.excessCycles = delta % millisPerCycle;
+			this.elapsedCycles = (int)Math.min(maxElapsedCycles, elapsedCycles + delta / nanosPerCycle);
+			this.excessNanos = delta % nanosPerCycle;
 		}
 		
 		//Set the last update time for the next update cycle.
@@ -126,14 +162,13 @@ public class Clock {
 	}
 	
 	/**
-	 * Calculates the current time in milliseconds using the computer's high
-	 * resolution clock. This is much more reliable than
-	 * {@code System.getCurrentTimeMillis()}, and quicker than
-	 * {@code System.nanoTime()}.
-	 * @return The current time in milliseconds.
+	 * Gets the current time in nanoseconds from the clock's time source. By
+	 * default this is the computer's high resolution clock, which is much more
+	 * reliable than {@code System.getCurrentTimeMillis()}.
+	 * @return The current time in nanoseconds.
 	 */
-	private static final long getCurrentTime() {
-		return (System.nanoTime() / 1000000L);
+	private long getCurrentTime() {
+		return time.nanoTime();
 	}
 
 }
\ No newline at end of file
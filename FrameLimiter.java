@@ -0,0 +1,113 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * La clase {@code FrameLimiter} hace que un bucle vaya a un número fijo de
+ * fotogramas por segundo. Los fotogramas se programan sobre una línea de tiempo
+ * fija en nanosegundos, en vez de dormir lo que quede del fotograma actual, así
+ * que los errores de redondeo no se acumulan. El hilo se aparca hasta poco antes
+ * del siguiente fotograma y espera activamente el resto, porque aparcarse sin más
+ * puede despertar un milisegundo tarde o más.
+ *
+ * Se guarda con cuánto retraso empieza cada fotograma, y cuántos fotogramas se
+ * saltaron del todo porque el bucle se quedó demasiado atrás.
+ *
+ */
+public class FrameLimiter {
+
+	/**
+	 * Cuánto antes del siguiente fotograma el hilo deja de aparcarse y empieza a
+	 * esperar activamente.
+	 */
+	private static final long SPIN_NANOS = 1000000L;
+
+	/**
+	 * Los nanosegundos que dura un fotograma.
+	 */
+	private final long nanosPerFrame;
+
+	/**
+	 * Con cuánto retraso empezó cada fotograma, en nanosegundos.
+	 */
+	private final LatencyHistogram lateness;
+
+	/**
+	 * Cuándo toca el siguiente fotograma.
+	 */
+	private long nextFrame;
+
+	/**
+	 * Los fotogramas que se han saltado.
+	 */
+	private volatile long droppedFrames;
+
+	/**
+	 * Crea un nuevo limitador. El primer fotograma toca dentro de un fotograma.
+	 * @param framesPerSecond Los fotogramas por segundo.
+	 */
+	public FrameLimiter(double framesPerSecond) {
+		this.nanosPerFrame = Math.max(1L, Math.round(1000000000.0 / framesPerSecond));
+		this.lateness = new LatencyHistogram();
+		reset();
+	}
+
+	/**
+	 * Programa el siguiente fotograma para dentro de un fotograma, olvidando los
+	 * que se hayan perdido.
+	 */
+	public void reset() {
+		this.nextFrame = System.nanoTime() + nanosPerFrame;
+	}
+
+	/**
+	 * Espera hasta que toque el siguiente fotograma. Si el bucle se ha quedado un
+	 * fotograma entero o más atrás, los fotogramas perdidos se saltan y se vuelve a
+	 * programar a partir de ahora, en vez de encadenar varios seguidos para ponerse al
+	 * día. Vuelve antes si se interrumpe el hilo.
+	 */
+	public void waitForNextFrame() {
+		long deadline = nextFrame;
+		long remaining = deadline - System.nanoTime();
+		while(remaining > SPIN_NANOS && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(remaining - SPIN_NANOS);
+			remaining = deadline - System.nanoTime();
+		}
+		while(remaining > 0 && !Thread.currentThread().isInterrupted()) {
+			Thread.onSpinWait();
+			remaining = deadline - System.nanoTime();
+		}
+
+		long late = -remaining;
+		lateness.record(late);
+		if(late >= nanosPerFrame) {
+			this.droppedFrames += late / nanosPerFrame;
+			this.nextFrame = deadline + (late / nanosPerFrame + 1) * nanosPerFrame;
+		} else {
+			this.nextFrame = deadline + nanosPerFrame;
+		}
+	}
+
+	/**
+	 * Obtiene los nanosegundos que dura un fotograma.
+	 * @return La duración de un fotograma.
+	 */
+	public long getNanosPerFrame() {
+		return nanosPerFrame;
+	}
+
+	/**
+	 * Obtiene con cuánto retraso empezó cada fotograma, en nanosegundos.
+	 * @return El histograma.
+	 */
+	public LatencyHistogram getLateness() {
+		return lateness;
+	}
+
+	/**
+	 * Obtiene los fotogramas que se saltaron porque el bucle se quedó atrás.
+	 * @return El número de fotogramas.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+}
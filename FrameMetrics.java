@@ -0,0 +1,300 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * La clase {@code FrameMetrics} mide cuánto tarda cada fase de un fotograma (leer
+ * las teclas, la lógica, publicar el estado, pedir el repintado y pintar cada panel)
+ * y lo guarda en un {@link LatencyHistogram} por fase. También calcula los
+ * fotogramas y ciclos lógicos por segundo, y un resumen que se muestra sobre el
+ * tablero mientras las métricas están activas. El resumen solo refleja el último
+ * periodo de un segundo, no toda la partida.
+ *
+ * Medir una fase no crea objetos. Mientras las métricas están desactivadas, medir
+ * solo cuesta leer un campo: ni siquiera se consulta la hora.
+ *
+ * Cada fase debe medirse siempre desde el mismo hilo, pero las métricas se pueden
+ * leer desde cualquiera.
+ *
+ */
+public class FrameMetrics {
+
+	/**
+	 * Las fases de un fotograma que se miden.
+	 */
+	public enum Phase {
+
+		/**
+		 * Aplicar las teclas pulsadas (hilo del bucle de juego).
+		 */
+		INPUT,
+
+		/**
+		 * Actualizar el temporizador lógico y la partida (hilo del bucle de juego).
+		 */
+		LOGIC,
+
+		/**
+		 * Copiar el estado para los pintores (hilo del bucle de juego).
+		 */
+		PUBLISH,
+
+		/**
+		 * Pedir el repintado de lo que ha cambiado (hilo del bucle de juego).
+		 */
+		RENDER,
+
+		/**
+		 * Todo el trabajo de un fotograma, sin la espera hasta el siguiente (hilo del bucle de juego).
+		 */
+		FRAME,
+
+		/**
+		 * Pintar el tablero (EDT, o el hilo de {@code ActiveRenderer}).
+		 */
+		PAINT_BOARD,
+
+		/**
+		 * Pintar el panel lateral (EDT, o el hilo de {@code ActiveRenderer}).
+		 */
+		PAINT_SIDE
+
+	}
+
+	/**
+	 * Cada cuántos nanosegundos se recalculan los valores por segundo y el resumen.
+	 */
+	private static final long SUMMARY_NANOS = 1000000000L;
+
+	/**
+	 * El histograma de cada fase, por ordinal.
+	 */
+	private final LatencyHistogram[] phases;
+
+	/**
+	 * El histograma de cada fase durante el periodo actual, para el resumen. Cada uno
+	 * lo borra el hilo que mide su fase, la primera vez que mide en un periodo nuevo.
+	 */
+	private final LatencyHistogram[] windows;
+
+	/**
+	 * El número del periodo actual. Solo lo cambia el hilo del bucle.
+	 */
+	private volatile int window;
+
+	/**
+	 * El periodo en el que midió por última vez cada fase. Cada elemento solo lo
+	 * escribe el hilo que mide su fase.
+	 */
+	private final AtomicIntegerArray phaseWindows;
+
+	/**
+	 * Si las métricas están activas.
+	 */
+	private volatile boolean isEnabled;
+
+	/**
+	 * El inicio del periodo actual para los valores por segundo. Solo lo usa el hilo del bucle.
+	 */
+	private long periodStart;
+
+	/**
+	 * Los fotogramas del periodo actual. Solo lo usa el hilo del bucle.
+	 */
+	private int periodFrames;
+
+	/**
+	 * Los ciclos lógicos totales al inicio del periodo actual. Solo lo usa el hilo del bucle.
+	 */
+	private long periodTicks;
+
+	private volatile float framesPerSecond;
+	private volatile float ticksPerSecond;
+	private volatile long droppedFrames;
+
+	/**
+	 * Las líneas del resumen.
+	 */
+	private volatile String[] summary;
+
+	/**
+	 * Se incrementa cada vez que cambia el resumen, para saber cuándo volver a pintarlo.
+	 * Lo incrementan tanto el hilo del bucle como el que activa las métricas (el EDT).
+	 */
+	private final AtomicInteger summaryVersion;
+
+	/**
+	 * Crea unas métricas nuevas.
+	 * @param enabled Si las métricas empiezan activas.
+	 */
+	public FrameMetrics(boolean enabled) {
+		this.phases = new LatencyHistogram[Phase.values().length];
+		this.windows = new LatencyHistogram[phases.length];
+		for(int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+			windows[i] = new LatencyHistogram();
+		}
+		this.phaseWindows = new AtomicIntegerArray(phases.length);
+		this.summaryVersion = new AtomicInteger();
+		this.summary = new String[0];
+		setEnabled(enabled);
+	}
+
+	/**
+	 * Activa o desactiva las métricas. Los histogramas de {@code getPhase} conservan
+	 * lo que ya habían medido.
+	 * @param enabled Si las métricas deben estar activas.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.isEnabled = enabled;
+		summaryVersion.incrementAndGet();
+	}
+
+	/**
+	 * Comprueba si las métricas están activas.
+	 * @return Verdadero si están activas.
+	 */
+	public boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Empieza a medir una fase.
+	 * @return La hora actual, o 0 si las métricas están desactivadas.
+	 */
+	public long start() {
+		return isEnabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Termina de medir una fase. No hace nada si la medida no llegó a empezar porque
+	 * las métricas estaban desactivadas. El valor devuelto sirve como inicio de la
+	 * siguiente fase, para no consultar la hora dos veces.
+	 * @param phase La fase.
+	 * @param start El valor que devolvió {@code start} (o la fase anterior).
+	 * @return La hora actual, o 0 si no se midió nada.
+	 */
+	public long record(Phase phase, long start) {
+		if(start == 0L) {
+			return 0L;
+		}
+		long now = System.nanoTime();
+		int index = phase.ordinal();
+		int current = window;
+		if(phaseWindows.get(index) != current) {
+			windows[index].reset();
+			phaseWindows.set(index, current);
+		}
+		phases[index].record(now - start);
+		windows[index].record(now - start);
+		return now;
+	}
+
+	/**
+	 * Cuenta un fotograma del bucle de juego y, una vez por segundo, recalcula los
+	 * valores por segundo y el resumen. Solo debe llamarse desde el hilo del bucle.
+	 * @param ticks Los ciclos lógicos totales hasta ahora.
+	 * @param droppedFrames Los fotogramas perdidos hasta ahora.
+	 */
+	public void endFrame(long ticks, long droppedFrames) {
+		if(!isEnabled) {
+			this.periodFrames = 0;
+			return;
+		}
+
+		long now = System.nanoTime();
+		if(periodFrames++ == 0) {
+			this.periodStart = now;
+			this.periodTicks = ticks;
+			this.window++;
+			return;
+		}
+
+		long elapsed = now - periodStart;
+		if(elapsed >= SUMMARY_NANOS) {
+			this.framesPerSecond = (periodFrames - 1) * 1e9f / elapsed;
+			this.ticksPerSecond = (ticks - periodTicks) * 1e9f / elapsed;
+			this.droppedFrames = droppedFrames;
+			this.summary = buildSummary();
+			this.window++;
+			summaryVersion.incrementAndGet();
+
+			this.periodFrames = 1;
+			this.periodStart = now;
+			this.periodTicks = ticks;
+		}
+	}
+
+	/**
+	 * Construye las líneas del resumen, con los tiempos en milisegundos. Las fases
+	 * que no se han medido en el periodo actual aparecen a cero.
+	 * @return Las líneas.
+	 */
+	private String[] buildSummary() {
+		Phase[] values = Phase.values();
+		String[] lines = new String[values.length + 2];
+		lines[0] = String.format("%.1f fps  %.1f ciclos/s  %d perdidos", framesPerSecond, ticksPerSecond, droppedFrames);
+		lines[1] = String.format("%-11s %6s %6s %6s", "ms", "p50", "p99", "max");
+		for(Phase phase : values) {
+			int index = phase.ordinal();
+			LatencyHistogram histogram = windows[index];
+			boolean isMeasured = phaseWindows.get(index) == window;
+			lines[index + 2] = String.format("%-11s %6.2f %6.2f %6.2f", phase,
+					isMeasured ? histogram.getPercentile(50) / 1e6 : 0.0,
+					isMeasured ? histogram.getPercentile(99) / 1e6 : 0.0,
+					isMeasured ? histogram.getMax() / 1e6 : 0.0);
+		}
+		return lines;
+	}
+
+	/**
+	 * Obtiene el histograma de una fase, en nanosegundos, desde que se crearon las métricas.
+	 * @param phase La fase.
+	 * @return El histograma.
+	 */
+	public LatencyHistogram getPhase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	/**
+	 * Obtiene los fotogramas por segundo del último periodo medido.
+	 * @return Los fotogramas por segundo.
+	 */
+	public float getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * Obtiene los ciclos lógicos por segundo del último periodo medido.
+	 * @return Los ciclos por segundo.
+	 */
+	public float getTicksPerSecond() {
+		return ticksPerSecond;
+	}
+
+	/**
+	 * Obtiene los fotogramas perdidos hasta el último periodo medido.
+	 * @return Los fotogramas perdidos.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * Obtiene las líneas del resumen: los valores por segundo y, por cada fase, su
+	 * p50, p99 y máximo en milisegundos.
+	 * @return Las líneas. No deben modificarse.
+	 */
+	public String[] getSummary() {
+		return summary;
+	}
+
+	/**
+	 * Obtiene un número que cambia cada vez que cambia el resumen o se activan o
+	 * desactivan las métricas.
+	 * @return La versión.
+	 */
+	public int getSummaryVersion() {
+		return summaryVersion.get();
+	}
+
+}
@@ -0,0 +1,685 @@
+import java.util.Random;
+
+/**
+ * La clase {@code GameEngine} contiene todo el estado y las reglas de una
+ * partida: el tablero, la pieza actual y la siguiente, la puntuación, el nivel
+ * y la velocidad. No depende de Swing, por lo que puede ejecutarse sin pantalla
+ * y tan rápido como se quiera; {@code Tetris}, {@code BoardPanel} y
+ * {@code SidePanel} solo la leen y le envían entradas.
+ *
+ */
+public class GameEngine {
+
+	/**
+	 * Las entradas que puede aplicar un jugador sobre la pieza actual.
+	 */
+	public enum Input {
+
+		/**
+		 * No hacer nada.
+		 */
+		NONE,
+
+		/**
+		 * Mover la pieza una columna a la izquierda.
+		 */
+		LEFT,
+
+		/**
+		 * Mover la pieza una columna a la derecha.
+		 */
+		RIGHT,
+
+		/**
+		 * Rotar la pieza en sentido contrario a las agujas del reloj.
+		 */
+		ROTATE_CCW,
+
+		/**
+		 * Rotar la pieza en el sentido de las agujas del reloj.
+		 */
+		ROTATE_CW,
+
+		/**
+		 * Dejar caer la pieza hasta el fondo y fijarla inmediatamente.
+		 */
+		HARD_DROP,
+
+		/**
+		 * Mantener la caída rápida. El motor no hace nada con esta entrada: la caída
+		 * rápida solo cambia la velocidad del temporizador de un {@link GameLoop}.
+		 */
+		SOFT_DROP
+	}
+
+	/**
+	 * El número de piezas existentes.
+	 */
+	private static final int TYPE_COUNT = TileType.values().length;
+
+	/**
+	 * El número de fotogramas que deben pasar después de generar una pieza
+	 * antes de que podamos dejarla caer (aproximadamente 0.5 segundos a 50 fps).
+	 */
+	private static final int DROP_COOLDOWN = 25;
+
+	/**
+	 * El tablero de juego.
+	 */
+	private Board board;
+
+	/**
+	 * El generador de números aleatorios. Se utiliza para
+	 * generar piezas de forma aleatoria.
+	 */
+	private Random random;
+
+	/**
+	 * Indica si el juego está pausado o no.
+	 */
+	private boolean isPaused;
+
+	/**
+	 * Indica si hemos jugado una partida aún. Se establece en verdadero
+	 * inicialmente y luego se establece en falso cuando comienza el juego.
+	 */
+	private boolean isNewGame;
+
+	/**
+	 * Indica si el juego ha terminado.
+	 */
+	private boolean isGameOver;
+
+	/**
+	 * El nivel actual en el que nos encontramos.
+	 */
+	private int level;
+
+	/**
+	 * La puntuación actual.
+	 */
+	private int score;
+
+	/**
+	 * El número de líneas eliminadas en la partida actual.
+	 */
+	private int lines;
+
+	/**
+	 * El número de piezas fijadas en el tablero en la partida actual.
+	 */
+	private int pieces;
+
+	/**
+	 * El tipo de pieza actual.
+	 */
+	private TileType currentType;
+
+	/**
+	 * El siguiente tipo de pieza.
+	 */
+	private TileType nextType;
+
+	/**
+	 * La columna actual de nuestra pieza.
+	 */
+	private int currentCol;
+
+	/**
+	 * La fila actual de nuestra pieza.
+	 */
+	private int currentRow;
+
+	/**
+	 * La rotación actual de nuestra pieza.
+	 */
+	private int currentRotation;
+
+	/**
+	 * Asegura que pase cierta cantidad de tiempo después de que se
+	 * genere una pieza antes de que podamos dejarla caer.
+	 */
+	private int dropCooldown;
+
+	/**
+	 * La velocidad del juego.
+	 */
+	private float gameSpeed;
+
+	/**
+	 * Se incrementa cada vez que cambian las casillas del tablero.
+	 */
+	private int boardVersion;
+
+	/**
+	 * Las filas que cambiaron en el último cambio del tablero (el bit {@code n}
+	 * corresponde a la fila {@code n}).
+	 */
+	private int changedRows;
+
+	/**
+	 * Se incrementa cada vez que la pieza actual se mueve, rota o se genera.
+	 */
+	private int pieceVersion;
+
+	/**
+	 * Se incrementa cada vez que cambian la puntuación, el nivel o la siguiente pieza.
+	 */
+	private int statsVersion;
+
+	/**
+	 * Se incrementa cada vez que el juego se pausa, se reanuda, empieza o termina.
+	 */
+	private int stateVersion;
+
+	/**
+	 * Crea un nuevo motor con una semilla aleatoria.
+	 */
+	public GameEngine() {
+		this(new Random());
+	}
+
+	/**
+	 * Crea un nuevo motor cuya secuencia de piezas está determinada por la semilla.
+	 * Dos motores con la misma semilla que reciben las mismas entradas juegan
+	 * exactamente la misma partida.
+	 * @param seed La semilla del generador de piezas.
+	 */
+	public GameEngine(long seed) {
+		this(new Random(seed));
+	}
+
+	/**
+	 * Crea un nuevo motor que utiliza el generador de números aleatorios indicado.
+	 * @param random El generador de piezas.
+	 */
+	private GameEngine(Random random) {
+		this.board = new Board();
+		this.random = random;
+		this.isNewGame = true;
+		this.gameSpeed = 1.0f;
+	}
+
+	/**
+	 * Restablece las variables del juego a sus valores predeterminados al inicio de un nuevo juego.
+	 */
+	public void reset() {
+		this.level = 1;
+		this.score = 0;
+		this.lines = 0;
+		this.pieces = 0;
+		this.gameSpeed = 1.0f;
+		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
+		this.isNewGame = false;
+		this.isGameOver = false;
+		this.isPaused = false;
+		board.clear();
+		spawnPiece();
+
+		boardVersion++;
+		changedRows = -1;
+		statsVersion++;
+		stateVersion++;
+	}
+
+	/**
+	 * Avanza la partida un ciclo lógico: aplica la entrada y luego deja caer la
+	 * pieza actual una fila, fijándola y generando la siguiente si no puede bajar.
+	 * Si la entrada fue una caída instantánea, la pieza ya se fijó y el ciclo termina
+	 * ahí: la pieza nueva no cae hasta el ciclo siguiente, como con cualquier otra entrada.
+	 * @param input La entrada a aplicar antes de la caída.
+	 * @return Verdadero si la pieza actual se fijó en el tablero durante este ciclo.
+	 */
+	public boolean step(Input input) {
+		if(applyInput(input) && input == Input.HARD_DROP) {
+			return true;
+		}
+		return updateGame();
+	}
+
+	/**
+	 * Aplica una entrada sobre la pieza actual, si el juego está en curso.
+	 * @param input La entrada a aplicar.
+	 * @return Verdadero si la pieza se movió, rotó o, con {@code HARD_DROP}, se fijó.
+	 */
+	public boolean applyInput(Input input) {
+		if(!isPlaying()) {
+			return false;
+		}
+
+		switch(input) {
+
+		/*
+		 * Mover a la izquierda o a la derecha - Verificamos que la posición junto a la
+		 * posición actual sea válida. Si es así, actualizamos la columna actual en 1.
+		 */
+		case LEFT:
+			if(board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
+				currentCol--;
+				pieceVersion++;
+				return true;
+			}
+			return false;
+
+		case RIGHT:
+			if(board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
+				currentCol++;
+				pieceVersion++;
+				return true;
+			}
+			return false;
+
+		/*
+		 * Rotar - Intentamos rotar la pieza en el sentido indicado. El código para la
+		 * rotación de la pieza se maneja en otro método.
+		 */
+		case ROTATE_CCW:
+			return rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
+
+		case ROTATE_CW:
+			return rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
+
+		/*
+		 * Caída instantánea - Movemos la pieza directamente a la fila donde caería, usando
+		 * la misma consulta que la pieza fantasma, y la fijamos sin esperar al siguiente ciclo.
+		 */
+		case HARD_DROP:
+			currentRow += getDropDistance();
+			lockPiece();
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Actualiza el juego y maneja la mayor parte de su lógica.
+	 * @return Verdadero si la pieza actual se fijó en el tablero.
+	 */
+	public boolean updateGame() {
+		if(!isPlaying()) {
+			return false;
+		}
+
+		/*
+		* Comprueba si la posición de la pieza puede moverse hacia abajo a la siguiente fila.
+		*/
+		if (board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
+			// Incrementa la fila actual si es seguro hacerlo.
+			currentRow++;
+			pieceVersion++;
+			return false;
+		}
+
+		/*
+		* Hemos llegado al fondo del tablero o aterrizado sobre otra pieza, por lo que
+		* necesitamos agregar la pieza al tablero.
+		*/
+		lockPiece();
+		return true;
+	}
+
+	/**
+	 * Agrega la pieza actual al tablero en su posición actual, elimina las líneas
+	 * completas y genera la siguiente pieza.
+	 */
+	private void lockPiece() {
+		GameEvents.PieceLock lockEvent = GameEvents.beginPieceLock();
+		TileType lockedType = currentType;
+
+		board.addPiece(currentType, currentCol, currentRow, currentRotation);
+		pieces++;
+
+		/*
+		* Comprueba si al agregar la nueva pieza se han eliminado líneas completas. En caso afirmativo,
+		* incrementa la puntuación del jugador. (Se pueden eliminar hasta 4 líneas de una sola vez;
+		* [1 = 100 puntos, 2 = 200 puntos, 3 = 400 puntos, 4 = 800 puntos]).
+		*/
+		GameEvents.LineClear clearEvent = GameEvents.beginLineClear();
+		int cleared = board.checkLines(currentType, currentRow, currentRotation);
+		if (cleared > 0 && clearEvent != null && clearEvent.shouldCommit()) {
+			clearEvent.rowsCleared = cleared;
+			clearEvent.clearedRows = board.getClearedRows();
+			clearEvent.commit();
+		}
+		if (cleared > 0) {
+			score += 50 << cleared;
+			lines += cleared;
+		}
+
+		/*
+		* Marca las filas que cambiaron: las que cubre la pieza y, si se eliminaron líneas,
+		* también todas las que están por encima, porque se han movido hacia abajo.
+		*/
+		int last = currentRow + currentType.getDimension() - currentType.getBottomInset(currentRotation);
+		int first = (cleared > 0) ? 0 : currentRow + currentType.getTopInset(currentRotation);
+		changedRows = (int) ((1L << (last + 1)) - (1L << first));
+		boardVersion++;
+		statsVersion++;
+
+		/*
+		* Aumenta ligeramente la velocidad para la siguiente pieza. Quien controle el
+		* temporizador del juego debe consultar getGameSpeed() para reflejar el aumento.
+		*/
+		gameSpeed += 0.035f;
+
+		/*
+		* Establece el tiempo de espera para que la siguiente pieza no aparezca automáticamente
+		* inmediatamente después de que esta pieza toque el fondo, si aún no hemos reaccionado.
+		*/
+		dropCooldown = DROP_COOLDOWN;
+
+		/*
+		* Actualiza el nivel de dificultad. Esto no tiene ningún efecto en el juego y solo se
+		* utiliza en la cadena "Nivel" en el SidePanel.
+		*/
+		level = (int) (gameSpeed * 1.70f);
+
+		/*
+		* Genera una nueva pieza para controlar.
+		*/
+		spawnPiece();
+
+		if (lockEvent != null && lockEvent.shouldCommit()) {
+			lockEvent.pieceType = lockedType.name();
+			lockEvent.rowsCleared = cleared;
+			lockEvent.score = score;
+			lockEvent.level = level;
+			lockEvent.commit();
+		}
+	}
+
+	/**
+	 * Avanza un fotograma, decrementando la "drop cooldown" si es necesario.
+	 */
+	public void tickFrame() {
+		if(dropCooldown > 0) {
+			dropCooldown--;
+		}
+	}
+
+	/**
+	 * Genera una nueva pieza y restablece las variables de la pieza a sus valores predeterminados.
+	 */
+	private void spawnPiece() {
+		GameEvents.Spawn event = GameEvents.beginSpawn();
+
+		/*
+		* Extrae la última pieza y restablece nuestra posición y rotación a sus variables predeterminadas,
+		* luego elige la siguiente pieza a utilizar.
+		*/
+		this.currentType = nextType;
+		this.currentCol = currentType.getSpawnColumn();
+		this.currentRow = currentType.getSpawnRow();
+		this.currentRotation = 0;
+		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
+		pieceVersion++;
+
+		/*
+		* Si el punto de generación es inválido, marcamos que hemos perdido, porque significa
+		* que las piezas en el tablero se han acumulado demasiado alto.
+		*/
+		if (!board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
+			this.isGameOver = true;
+			stateVersion++;
+		}
+
+		if (event != null && event.shouldCommit()) {
+			event.pieceType = currentType.name();
+			event.gameOver = isGameOver;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Intenta establecer la rotación de la pieza actual a newRotation.
+	 * @param newRotation La rotación de la nueva pieza.
+	 * @return Verdadero si la pieza se rotó.
+	 */
+	private boolean rotatePiece(int newRotation) {
+		/*
+		* A veces las piezas tendrán que moverse al rotar para evitar salir del tablero
+		* (la pieza I es un buen ejemplo de esto). Aquí almacenamos una fila y columna temporal en caso
+		* de que también necesitemos mover la ficha.
+		*/
+		int newColumn = currentCol;
+		int newRow = currentRow;
+
+		/*
+		* Obtiene los desplazamientos para cada uno de los lados. Se utilizan para determinar cuántas filas
+		* o columnas vacías hay en cada lado.
+		*/
+		int left = currentType.getLeftInset(newRotation);
+		int right = currentType.getRightInset(newRotation);
+		int top = currentType.getTopInset(newRotation);
+		int bottom = currentType.getBottomInset(newRotation);
+
+		/*
+		* Si la pieza actual está demasiado a la izquierda o a la derecha, mueve la pieza lejos de los bordes
+		* para evitar que la pieza se salga del mapa y se vuelva automáticamente inválida.
+		*/
+		if (currentCol < -left) {
+			newColumn -= currentCol - left;
+		} else if (currentCol + currentType.getDimension() - right >= Board.COL_COUNT) {
+			newColumn -= (currentCol + currentType.getDimension() - right) - Board.COL_COUNT + 1;
+		}
+
+		/*
+		* Si la pieza actual está demasiado arriba o abajo, mueve la pieza lejos de los bordes
+		* para evitar que la pieza se salga del mapa y se vuelva automáticamente inválida.
+		*/
+		if (currentRow < -top) {
+			newRow -= currentRow - top;
+		} else if (currentRow + currentType.getDimension() - bottom >= Board.ROW_COUNT) {
+			newRow -= (currentRow + currentType.getDimension() - bottom) - Board.ROW_COUNT + 1;
+		}
+
+		/*
+		* Comprueba si la nueva posición es aceptable. Si lo es, actualiza la rotación y
+		* posición de la pieza.
+		*/
+		if (board.isValidAndEmpty(currentType, newColumn, newRow, newRotation)) {
+			currentRotation = newRotation;
+			currentRow = newRow;
+			currentCol = newColumn;
+			pieceVersion++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Calcula cuántas filas puede caer la pieza actual antes de aterrizar.
+	 * @return El número de filas.
+	 */
+	public int getDropDistance() {
+		return board.getDropDistance(currentType, currentCol, currentRow, currentRotation);
+	}
+
+	/**
+	 * Comprueba si hay una partida en curso que acepte entradas.
+	 * @return Verdadero si el juego no está pausado, terminado ni sin empezar.
+	 */
+	public boolean isPlaying() {
+		return !isPaused && !isNewGame && !isGameOver;
+	}
+
+	/**
+	 * Comprueba si la pieza actual puede empezar a caer rápido, es decir, si el
+	 * juego no está pausado y ha pasado el tiempo de espera desde que se generó.
+	 * @return Verdadero si se puede soltar la pieza.
+	 */
+	public boolean canSoftDrop() {
+		return !isPaused && dropCooldown == 0;
+	}
+
+	/**
+	 * Pausa o reanuda el juego. No tiene efecto si no hay una partida en curso.
+	 * @param paused Si el juego debe pausarse.
+	 */
+	public void setPaused(boolean paused) {
+		if(!isGameOver && !isNewGame) {
+			this.isPaused = paused;
+			stateVersion++;
+		}
+	}
+
+	/**
+	 * Obtiene la versión del tablero, que cambia cada vez que cambian sus casillas.
+	 * @return La versión.
+	 */
+	public int getBoardVersion() {
+		return boardVersion;
+	}
+
+	/**
+	 * Obtiene las filas que cambiaron en el último cambio del tablero. El bit {@code n}
+	 * corresponde a la fila {@code n}; si todas pueden haber cambiado, todos los bits
+	 * están activos.
+	 * @return La máscara de filas.
+	 */
+	public int getChangedRows() {
+		return changedRows;
+	}
+
+	/**
+	 * Obtiene la versión de la pieza actual, que cambia cada vez que se mueve, rota
+	 * o se genera una nueva.
+	 * @return La versión.
+	 */
+	public int getPieceVersion() {
+		return pieceVersion;
+	}
+
+	/**
+	 * Obtiene la versión de las estadísticas, que cambia cada vez que cambian la
+	 * puntuación, el nivel o la siguiente pieza.
+	 * @return La versión.
+	 */
+	public int getStatsVersion() {
+		return statsVersion;
+	}
+
+	/**
+	 * Obtiene la versión del estado del juego, que cambia cada vez que se pausa,
+	 * se reanuda, empieza o termina.
+	 * @return La versión.
+	 */
+	public int getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * Obtiene el tablero de juego.
+	 * @return El tablero.
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Comprueba si el juego está pausado o no.
+	 * @return Verdadero si el juego está pausado, falso de lo contrario.
+	 */
+	public boolean isPaused() {
+		return isPaused;
+	}
+
+	/**
+	 * Comprueba si el juego ha terminado o no.
+	 * @return Verdadero si el juego ha terminado, falso de lo contrario.
+	 */
+	public boolean isGameOver() {
+		return isGameOver;
+	}
+
+	/**
+	 * Comprueba si es un nuevo juego o no.
+	 * @return Verdadero si es un nuevo juego, falso de lo contrario.
+	 */
+	public boolean isNewGame() {
+		return isNewGame;
+	}
+
+	/**
+	 * Obtiene la puntuación actual.
+	 * @return La puntuación.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Obtiene el nivel actual.
+	 * @return El nivel.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Obtiene el número de líneas eliminadas en la partida actual.
+	 * @return Las líneas eliminadas.
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * Obtiene el número de piezas fijadas en la partida actual.
+	 * @return Las piezas fijadas.
+	 */
+	public int getPieces() {
+		return pieces;
+	}
+
+	/**
+	 * Obtiene la velocidad actual del juego, en ciclos lógicos por segundo.
+	 * @return La velocidad.
+	 */
+	public float getGameSpeed() {
+		return gameSpeed;
+	}
+
+	/**
+	 * Obtiene el tipo de pieza actual que se está utilizando.
+	 * @return El tipo de pieza.
+	 */
+	public TileType getPieceType() {
+		return currentType;
+	}
+
+	/**
+	 * Obtiene el siguiente tipo de pieza que se utilizará.
+	 * @return La siguiente pieza.
+	 */
+	public TileType getNextPieceType() {
+		return nextType;
+	}
+
+	/**
+	 * Obtiene la columna de la pieza actual.
+	 * @return La columna.
+	 */
+	public int getPieceCol() {
+		return currentCol;
+	}
+
+	/**
+	 * Obtiene la fila de la pieza actual.
+	 * @return La fila.
+	 */
+	public int getPieceRow() {
+		return currentRow;
+	}
+
+	/**
+	 * Obtiene la rotación de la pieza actual.
+	 * @return La rotación.
+	 */
+	public int getPieceRotation() {
+		return currentRotation;
+	}
+
+}
@@ -0,0 +1,283 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * La clase {@code GameEvents} agrupa los eventos de Java Flight Recorder del juego,
+ * para que las grabaciones muestren en qué gasta el tiempo cada parte: el bucle de
+ * juego, el motor, el servidor y la tabla de líderes. Cada evento mide su propia
+ * duración entre {@code begin()} y {@code commit()}.
+ *
+ * Los eventos se crean con los métodos {@code begin...}, que ya los empiezan. Mientras
+ * no se esté grabando (o el evento esté desactivado en la configuración de la
+ * grabación) devuelven null sin crear nada, así que medir no crea objetos en el bucle
+ * de juego, en las simulaciones ni en cada lectura del servidor.
+ *
+ */
+public final class GameEvents {
+
+	private static final EventType FRAME = EventType.getEventType(Frame.class);
+	private static final EventType PIECE_LOCK = EventType.getEventType(PieceLock.class);
+	private static final EventType LINE_CLEAR = EventType.getEventType(LineClear.class);
+	private static final EventType SPAWN = EventType.getEventType(Spawn.class);
+	private static final EventType SERVER_ACCEPT = EventType.getEventType(ServerAccept.class);
+	private static final EventType SERVER_READ = EventType.getEventType(ServerRead.class);
+	private static final EventType LEADERBOARD_ADD = EventType.getEventType(LeaderboardAdd.class);
+	private static final EventType LEADERBOARD_BATCH = EventType.getEventType(LeaderboardBatch.class);
+
+	private GameEvents() {
+	}
+
+	/**
+	 * Empieza un evento {@link Frame}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static Frame beginFrame() {
+		if(!FRAME.isEnabled()) {
+			return null;
+		}
+		Frame event = new Frame();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link PieceLock}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static PieceLock beginPieceLock() {
+		if(!PIECE_LOCK.isEnabled()) {
+			return null;
+		}
+		PieceLock event = new PieceLock();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link LineClear}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static LineClear beginLineClear() {
+		if(!LINE_CLEAR.isEnabled()) {
+			return null;
+		}
+		LineClear event = new LineClear();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link Spawn}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static Spawn beginSpawn() {
+		if(!SPAWN.isEnabled()) {
+			return null;
+		}
+		Spawn event = new Spawn();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link ServerAccept}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static ServerAccept beginServerAccept() {
+		if(!SERVER_ACCEPT.isEnabled()) {
+			return null;
+		}
+		ServerAccept event = new ServerAccept();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link ServerRead}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static ServerRead beginServerRead() {
+		if(!SERVER_READ.isEnabled()) {
+			return null;
+		}
+		ServerRead event = new ServerRead();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link LeaderboardAdd}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static LeaderboardAdd beginLeaderboardAdd() {
+		if(!LEADERBOARD_ADD.isEnabled()) {
+			return null;
+		}
+		LeaderboardAdd event = new LeaderboardAdd();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Empieza un evento {@link LeaderboardBatch}.
+	 * @return El evento, o null si no se está grabando.
+	 */
+	public static LeaderboardBatch beginLeaderboardBatch() {
+		if(!LEADERBOARD_BATCH.isEnabled()) {
+			return null;
+		}
+		LeaderboardBatch event = new LeaderboardBatch();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Un fotograma del bucle de juego, sin la espera hasta el siguiente.
+	 */
+	@Name("tetris.Frame")
+	@Label("Frame")
+	@Category({"Tetris", "Game Loop"})
+	@Description("Un fotograma del bucle de juego, sin la espera hasta el siguiente")
+	public static class Frame extends Event {
+
+		@Label("Logic Ticks")
+		@Description("Ciclos lógicos que se ejecutaron en el fotograma")
+		public int ticks;
+
+		@Label("Piece Locked")
+		@Description("Si se fijó alguna pieza en el fotograma")
+		public boolean pieceLocked;
+	}
+
+	/**
+	 * Una pieza que se fija en el tablero, incluida la eliminación de líneas y la
+	 * generación de la siguiente pieza.
+	 */
+	@Name("tetris.PieceLock")
+	@Label("Piece Lock")
+	@Category({"Tetris", "Engine"})
+	@Description("Una pieza se fija en el tablero")
+	public static class PieceLock extends Event {
+
+		@Label("Piece Type")
+		public String pieceType;
+
+		@Label("Rows Cleared")
+		public int rowsCleared;
+
+		@Label("Score")
+		public int score;
+
+		@Label("Level")
+		public int level;
+	}
+
+	/**
+	 * La comprobación y eliminación de las líneas completas tras fijar una pieza.
+	 */
+	@Name("tetris.LineClear")
+	@Label("Line Clear")
+	@Category({"Tetris", "Engine"})
+	@Description("Se comprueban y eliminan las líneas completas")
+	public static class LineClear extends Event {
+
+		@Label("Rows Cleared")
+		public int rowsCleared;
+
+		@Label("Cleared Rows Mask")
+		@Description("Un bit por cada fila del tablero que se eliminó")
+		public int clearedRows;
+	}
+
+	/**
+	 * La generación de una nueva pieza.
+	 */
+	@Name("tetris.Spawn")
+	@Label("Spawn Piece")
+	@Category({"Tetris", "Engine"})
+	@Description("Se genera una nueva pieza")
+	public static class Spawn extends Event {
+
+		@Label("Piece Type")
+		public String pieceType;
+
+		@Label("Game Over")
+		@Description("Si la pieza no cabía y la partida terminó")
+		public boolean gameOver;
+	}
+
+	/**
+	 * La espera del servidor hasta que se conecta un cliente.
+	 */
+	@Name("tetris.ServerAccept")
+	@Label("Server Accept")
+	@Category({"Tetris", "Server"})
+	@Description("El servidor acepta una conexión")
+	public static class ServerAccept extends Event {
+
+		@Label("Remote Address")
+		public String remoteAddress;
+	}
+
+	/**
+	 * La lectura de un mensaje de un cliente, desde que se empieza a esperar hasta
+	 * que se ha leído entero.
+	 */
+	@Name("tetris.ServerRead")
+	@Label("Server Read")
+	@Category({"Tetris", "Server"})
+	@Description("El servidor lee un mensaje de un cliente")
+	public static class ServerRead extends Event {
+
+		@Label("Remote Address")
+		public String remoteAddress;
+
+		@Label("Bytes Read")
+		@DataAmount
+		public long bytesRead;
+	}
+
+	/**
+	 * Un jugador que se agrega a la tabla de líderes.
+	 */
+	@Name("tetris.LeaderboardAdd")
+	@Label("Leaderboard Add")
+	@Category({"Tetris", "Leaderboard"})
+	@Description("Se agrega un jugador a la tabla de líderes")
+	public static class LeaderboardAdd extends Event {
+
+		@Label("Player")
+		public String player;
+
+		@Label("Score")
+		public int score;
+
+		@Label("Leaderboard Size")
+		@Description("El número de jugadores en la tabla después de agregarlo")
+		public int size;
+	}
+
+	/**
+	 * Un lote de jugadores que se agrega a la tabla de líderes de una vez.
+	 */
+	@Name("tetris.LeaderboardBatch")
+	@Label("Leaderboard Batch")
+	@Category({"Tetris", "Leaderboard"})
+	@Description("Se agrega un lote de jugadores a la tabla de líderes")
+	public static class LeaderboardBatch extends Event {
+
+		@Label("Players")
+		@Description("El número de jugadores del lote")
+		public int players;
+
+		@Label("Leaderboard Size")
+		@Description("El número de jugadores en la tabla después de agregar el lote")
+		public int size;
+	}
+
+}
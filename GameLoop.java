@@ -0,0 +1,179 @@
+/**
+ * La clase {@code GameLoop} avanza una partida fotograma a fotograma: hace caer la
+ * pieza según el temporizador lógico, aplica la caída rápida y la espera tras fijar
+ * una pieza ({@code dropCooldown}). Es la misma lógica que ejecuta la ventana del
+ * juego en cada fotograma, pero sin ventana ni espera, así que con un
+ * {@link VirtualClock} una partida entera se puede simular mucho más rápido que
+ * en tiempo real, ciclo a ciclo igual que si se jugara.
+ *
+ * Solo debe usarse desde un hilo.
+ *
+ */
+public class GameLoop {
+
+	/**
+	 * La velocidad del temporizador lógico, en ciclos por segundo, durante la caída rápida.
+	 */
+	private static final float SOFT_DROP_SPEED = 25.0f;
+
+	/**
+	 * El número máximo de ciclos lógicos que se ponen al día tras un retraso, para que
+	 * un parón no haga caer la pieza varias filas de golpe.
+	 */
+	private static final int MAX_CATCH_UP_CYCLES = 3;
+
+	/**
+	 * El motor de la partida.
+	 */
+	private final GameEngine engine;
+
+	/**
+	 * El reloj que maneja la lógica de actualización.
+	 */
+	private final Clock logicTimer;
+
+	/**
+	 * El número de ciclos lógicos que han transcurrido.
+	 */
+	private long ticks;
+
+	/**
+	 * Si se mantiene pulsada la caída rápida.
+	 */
+	private boolean isSoftDropHeld;
+
+	/**
+	 * Si la caída rápida está activa.
+	 */
+	private boolean isSoftDropping;
+
+	/**
+	 * Crea un nuevo bucle para el motor indicado. El temporizador lógico empieza
+	 * pausado, hasta que se llama a {@code reset}.
+	 * @param engine El motor de la partida.
+	 * @param time De dónde obtiene la hora el temporizador lógico.
+	 */
+	public GameLoop(GameEngine engine, TimeSource time) {
+		this.engine = engine;
+		this.logicTimer = new Clock(engine.getGameSpeed(), time);
+		logicTimer.setMaxElapsedCycles(MAX_CATCH_UP_CYCLES);
+		logicTimer.setPaused(true);
+	}
+
+	/**
+	 * Empieza una nueva partida.
+	 */
+	public void reset() {
+		engine.reset();
+		logicTimer.reset();
+		logicTimer.setCyclesPerSecond(engine.getGameSpeed());
+		this.isSoftDropping = false;
+	}
+
+	/**
+	 * Avanza un fotograma: deja caer la pieza una fila por cada ciclo que haya
+	 * transcurrido en el temporizador lógico y reduce la espera tras fijar una pieza.
+	 * @return Verdadero si se fijó alguna pieza en el tablero.
+	 */
+	public boolean frame() {
+		/*
+		 * Caída rápida - Mientras se mantiene, verificamos que el juego no esté pausado
+		 * y que no haya un tiempo de espera para soltar, luego establecemos el
+		 * temporizador lógico para que se ejecute a una velocidad de 25 ciclos por segundo.
+		 */
+		if(isSoftDropHeld && !isSoftDropping && engine.canSoftDrop()) {
+			logicTimer.setCyclesPerSecond(SOFT_DROP_SPEED);
+			this.isSoftDropping = true;
+		}
+
+		// Actualizamos el temporizador lógico.
+		logicTimer.update();
+
+		/*
+		 * Por cada ciclo que ha transcurrido en el temporizador, actualizamos el juego y
+		 * movemos la pieza actual hacia abajo.
+		 */
+		boolean locked = false;
+		while(logicTimer.hasElapsedCycle()) {
+			ticks++;
+			if(engine.updateGame()) {
+				pieceLocked();
+				locked = true;
+			}
+		}
+
+		// Decrementamos la "drop cooldown" si es necesario.
+		engine.tickFrame();
+		return locked;
+	}
+
+	/**
+	 * Aplica una entrada sobre la pieza actual. {@code SOFT_DROP} activa la caída
+	 * rápida hasta que se llama a {@code setSoftDrop(false)}.
+	 * @param input La entrada a aplicar.
+	 * @return Verdadero si la pieza se fijó en el tablero.
+	 */
+	public boolean applyInput(GameEngine.Input input) {
+		if(input == GameEngine.Input.SOFT_DROP) {
+			setSoftDrop(true);
+			return false;
+		}
+		if(engine.applyInput(input) && input == GameEngine.Input.HARD_DROP) {
+			pieceLocked();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Mantiene o suelta la caída rápida. Al soltarla, el temporizador lógico vuelve
+	 * a la velocidad actual del juego y se elimina cualquier ciclo que aún esté transcurriendo.
+	 * @param held Si se mantiene la caída rápida.
+	 */
+	public void setSoftDrop(boolean held) {
+		if(isSoftDropHeld && !held) {
+			logicTimer.setCyclesPerSecond(engine.getGameSpeed());
+			logicTimer.reset();
+			this.isSoftDropping = false;
+		}
+		this.isSoftDropHeld = held;
+	}
+
+	/**
+	 * Pausa o reanuda la partida y el temporizador lógico. Si no hay una partida en
+	 * curso, solo se pausa o reanuda el temporizador.
+	 * @param paused Si la partida debe pausarse.
+	 */
+	public void setPaused(boolean paused) {
+		engine.setPaused(paused);
+		logicTimer.setPaused(paused);
+	}
+
+	/**
+	 * Se llama después de que una pieza se fija en el tablero. Actualiza el temporizador
+	 * para reflejar el aumento de velocidad. Si se mantiene la caída rápida, se reactiva
+	 * cuando termine la espera tras fijar la pieza.
+	 */
+	private void pieceLocked() {
+		logicTimer.setCyclesPerSecond(engine.getGameSpeed());
+		logicTimer.reset();
+		this.isSoftDropping = false;
+	}
+
+	/**
+	 * Obtiene el número de ciclos lógicos que han transcurrido desde que se creó el bucle.
+	 * @return El número de ciclos.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Obtiene el motor de la partida.
+	 * @return El motor.
+	 */
+	public GameEngine getEngine() {
+		return engine;
+	}
+
+}
@@ -0,0 +1,169 @@
+/**
+ * La clase {@code GameSnapshot} es una copia del estado visible de una partida
+ * en un instante dado: el tablero, la pieza actual y su pieza fantasma, la
+ * siguiente pieza, la puntuación, el nivel y el estado del juego. Los paneles
+ * dibujan a partir de una copia, nunca del {@code GameEngine}, para que un
+ * fotograma no mezcle el estado de dos ciclos distintos.
+ *
+ * Las copias se reutilizan: solo {@link SnapshotBuffer} las rellena, y nunca
+ * mientras un pintor pueda estar leyéndolas.
+ *
+ */
+public class GameSnapshot {
+
+	/**
+	 * La copia del tablero.
+	 */
+	private final Board board;
+
+	/**
+	 * La versión del tablero del motor que contiene la copia, para no volver a
+	 * copiarlo si no ha cambiado.
+	 */
+	private int boardVersion;
+
+	private boolean isPaused;
+	private boolean isNewGame;
+	private boolean isGameOver;
+	private int score;
+	private int level;
+	private TileType currentType;
+	private TileType nextType;
+	private int currentCol;
+	private int currentRow;
+	private int currentRotation;
+
+	/**
+	 * El número de filas que puede caer la pieza actual (donde se dibuja la pieza fantasma).
+	 */
+	private int dropDistance;
+
+	/**
+	 * Crea una copia vacía.
+	 */
+	GameSnapshot() {
+		this.board = new Board();
+		this.boardVersion = -1;
+	}
+
+	/**
+	 * Copia el estado actual del motor. Solo debe llamarse desde el hilo que
+	 * modifica el motor.
+	 * @param engine El motor.
+	 */
+	void capture(GameEngine engine) {
+		if(engine.getBoardVersion() != boardVersion) {
+			board.copyFrom(engine.getBoard());
+			this.boardVersion = engine.getBoardVersion();
+		}
+
+		this.isPaused = engine.isPaused();
+		this.isNewGame = engine.isNewGame();
+		this.isGameOver = engine.isGameOver();
+		this.score = engine.getScore();
+		this.level = engine.getLevel();
+		this.currentType = engine.getPieceType();
+		this.nextType = engine.getNextPieceType();
+		this.currentCol = engine.getPieceCol();
+		this.currentRow = engine.getPieceRow();
+		this.currentRotation = engine.getPieceRotation();
+		this.dropDistance = (engine.isPlaying() && currentType != null) ? engine.getDropDistance() : 0;
+	}
+
+	/**
+	 * Obtiene la copia del tablero. No debe modificarse.
+	 * @return El tablero.
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Comprueba si el juego está pausado o no.
+	 * @return Verdadero si el juego está pausado, falso de lo contrario.
+	 */
+	public boolean isPaused() {
+		return isPaused;
+	}
+
+	/**
+	 * Comprueba si es un nuevo juego o no.
+	 * @return Verdadero si es un nuevo juego, falso de lo contrario.
+	 */
+	public boolean isNewGame() {
+		return isNewGame;
+	}
+
+	/**
+	 * Comprueba si el juego ha terminado o no.
+	 * @return Verdadero si el juego ha terminado, falso de lo contrario.
+	 */
+	public boolean isGameOver() {
+		return isGameOver;
+	}
+
+	/**
+	 * Obtiene la puntuación.
+	 * @return La puntuación.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Obtiene el nivel.
+	 * @return El nivel.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Obtiene el tipo de pieza actual.
+	 * @return El tipo de pieza.
+	 */
+	public TileType getPieceType() {
+		return currentType;
+	}
+
+	/**
+	 * Obtiene el siguiente tipo de pieza.
+	 * @return La siguiente pieza.
+	 */
+	public TileType getNextPieceType() {
+		return nextType;
+	}
+
+	/**
+	 * Obtiene la columna de la pieza actual.
+	 * @return La columna.
+	 */
+	public int getPieceCol() {
+		return currentCol;
+	}
+
+	/**
+	 * Obtiene la fila de la pieza actual.
+	 * @return La fila.
+	 */
+	public int getPieceRow() {
+		return currentRow;
+	}
+
+	/**
+	 * Obtiene la rotación de la pieza actual.
+	 * @return La rotación.
+	 */
+	public int getPieceRotation() {
+		return currentRotation;
+	}
+
+	/**
+	 * Obtiene cuántas filas puede caer la pieza actual antes de aterrizar.
+	 * @return El número de filas.
+	 */
+	public int getDropDistance() {
+		return dropDistance;
+	}
+
+}
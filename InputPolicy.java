@@ -0,0 +1,29 @@
+import java.util.Random;
+
+/**
+ * La interfaz {@code InputPolicy} decide qué entrada aplicar en cada ciclo de
+ * una partida simulada. Cada partida recibe su propia política, por lo que una
+ * implementación puede guardar estado sin preocuparse por otros hilos.
+ *
+ */
+public interface InputPolicy {
+
+	/**
+	 * Elige la entrada para el siguiente ciclo lógico.
+	 * @param engine El motor de la partida, en su estado actual.
+	 * @return La entrada a aplicar.
+	 */
+	GameEngine.Input nextInput(GameEngine engine);
+
+	/**
+	 * Crea una política que elige entradas al azar, de forma uniforme.
+	 * @param seed La semilla del generador de entradas.
+	 * @return La política.
+	 */
+	static InputPolicy random(long seed) {
+		Random random = new Random(seed);
+		GameEngine.Input[] inputs = GameEngine.Input.values();
+		return engine -> inputs[random.nextInt(inputs.length)];
+	}
+
+}
@@ -0,0 +1,138 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * La clase {@code InputQueue} lleva las teclas pulsadas y soltadas desde el EDT
+ * hasta el hilo del bucle de juego, junto con el instante ({@code System.nanoTime()})
+ * en que se recibió cada una. Es una cola circular sin bloqueos y sin creación
+ * de objetos: el EDT solo escribe al final, el bucle de juego solo lee del
+ * principio, y cada uno publica su posición con un {@code AtomicInteger}.
+ *
+ * Solo un hilo debe añadir eventos y solo un hilo debe sacarlos.
+ *
+ */
+public class InputQueue {
+
+	/**
+	 * El número máximo de eventos pendientes. Debe ser una potencia de dos.
+	 */
+	private static final int CAPACITY = 64;
+
+	/**
+	 * Máscara para obtener la posición de un evento en los arrays.
+	 */
+	private static final int MASK = CAPACITY - 1;
+
+	/**
+	 * El código de tecla de cada evento.
+	 */
+	private final int[] keyCodes;
+
+	/**
+	 * Si cada evento es una pulsación (o si la tecla se soltó).
+	 */
+	private final boolean[] pressed;
+
+	/**
+	 * El instante en que se recibió cada evento.
+	 */
+	private final long[] times;
+
+	/**
+	 * El número de eventos que se han sacado de la cola.
+	 */
+	private final AtomicInteger head;
+
+	/**
+	 * El número de eventos que se han añadido a la cola.
+	 */
+	private final AtomicInteger tail;
+
+	/**
+	 * El código de tecla del último evento sacado. Solo lo usa el hilo que lee.
+	 */
+	private int keyCode;
+
+	/**
+	 * Si el último evento sacado es una pulsación. Solo lo usa el hilo que lee.
+	 */
+	private boolean isPressed;
+
+	/**
+	 * El instante del último evento sacado. Solo lo usa el hilo que lee.
+	 */
+	private long time;
+
+	/**
+	 * Crea una cola vacía.
+	 */
+	public InputQueue() {
+		this.keyCodes = new int[CAPACITY];
+		this.pressed = new boolean[CAPACITY];
+		this.times = new long[CAPACITY];
+		this.head = new AtomicInteger();
+		this.tail = new AtomicInteger();
+	}
+
+	/**
+	 * Añade un evento al final de la cola. Si la cola está llena, el evento se descarta.
+	 * @param keyCode El código de la tecla.
+	 * @param isPressed Verdadero si la tecla se pulsó, falso si se soltó.
+	 * @param time El instante en que se recibió el evento, de {@code System.nanoTime()}.
+	 * @return Verdadero si el evento se añadió, falso si la cola estaba llena.
+	 */
+	public boolean offer(int keyCode, boolean isPressed, long time) {
+		int t = tail.get();
+		if(t - head.get() == CAPACITY) {
+			return false;
+		}
+		int i = t & MASK;
+		keyCodes[i] = keyCode;
+		pressed[i] = isPressed;
+		times[i] = time;
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Saca el primer evento de la cola. Sus datos se consultan después con
+	 * {@code getKeyCode}, {@code isPressed} y {@code getTime}.
+	 * @return Verdadero si había un evento, falso si la cola estaba vacía.
+	 */
+	public boolean poll() {
+		int h = head.get();
+		if(h == tail.get()) {
+			return false;
+		}
+		int i = h & MASK;
+		this.keyCode = keyCodes[i];
+		this.isPressed = pressed[i];
+		this.time = times[i];
+		head.lazySet(h + 1);
+		return true;
+	}
+
+	/**
+	 * Obtiene el código de tecla del último evento sacado.
+	 * @return El código de tecla.
+	 */
+	public int getKeyCode() {
+		return keyCode;
+	}
+
+	/**
+	 * Comprueba si el último evento sacado es una pulsación.
+	 * @return Verdadero si la tecla se pulsó, falso si se soltó.
+	 */
+	public boolean isPressed() {
+		return isPressed;
+	}
+
+	/**
+	 * Obtiene el instante en que se recibió el último evento sacado.
+	 * @return El instante, de {@code System.nanoTime()}.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+}
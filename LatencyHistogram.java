@@ -0,0 +1,155 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * La clase {@code LatencyHistogram} cuenta duraciones en nanosegundos en cubetas
+ * logarítmicas, para poder consultar percentiles sin guardar cada medida. Cada
+ * potencia de dos se divide en {@code SUB_BUCKETS} cubetas, así que el error de
+ * un percentil es como mucho del 12,5%. Registrar una medida no crea objetos.
+ *
+ * Solo un hilo debe registrar medidas, pero cualquier hilo puede leerlas mientras
+ * tanto (por ejemplo, para mostrarlas).
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * El número de cubetas en las que se divide cada potencia de dos.
+	 */
+	private static final int SUB_BUCKETS = 8;
+
+	/**
+	 * El logaritmo en base dos de {@code SUB_BUCKETS}.
+	 */
+	private static final int SUB_BITS = 3;
+
+	/**
+	 * El número total de cubetas, suficiente para cualquier valor {@code long} positivo.
+	 */
+	private static final int BUCKET_COUNT = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+	/**
+	 * El número de medidas de cada cubeta.
+	 */
+	private final AtomicLongArray counts;
+
+	/**
+	 * La mayor medida registrada.
+	 */
+	private volatile long max;
+
+	/**
+	 * Crea un histograma vacío.
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	/**
+	 * Registra una medida. Los valores negativos cuentan como cero.
+	 * @param nanos La duración en nanosegundos.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		int bucket = getBucket(nanos);
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		if(nanos > max) {
+			this.max = nanos;
+		}
+	}
+
+	/**
+	 * Borra todas las medidas. Solo debe llamarlo el hilo que las registra; quien las
+	 * lea mientras tanto puede ver una mezcla de las anteriores y ninguna.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			counts.lazySet(i, 0);
+		}
+		this.max = 0;
+	}
+
+	/**
+	 * Obtiene el número de medidas registradas.
+	 * @return El número de medidas.
+	 */
+	public long getCount() {
+		long count = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Obtiene la mayor medida registrada.
+	 * @return La duración en nanosegundos, o 0 si no hay medidas.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Obtiene un percentil de las medidas registradas. El valor devuelto es el
+	 * límite superior de la cubeta que lo contiene, sin superar el máximo.
+	 * @param percentile El percentil, entre 0 y 100.
+	 * @return La duración en nanosegundos, o 0 si no hay medidas.
+	 */
+	public long getPercentile(double percentile) {
+		long count = getCount();
+		if(count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(count * percentile / 100.0));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if(seen >= rank) {
+				return Math.min(getUpperBound(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Obtiene la cubeta de un valor. Los valores menores que {@code SUB_BUCKETS}
+	 * tienen una cubeta cada uno; el resto se reparten según su bit más alto y los
+	 * {@code SUB_BITS} bits siguientes.
+	 * @param value El valor.
+	 * @return El índice de la cubeta.
+	 */
+	private static int getBucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Obtiene el mayor valor que cabe en una cubeta.
+	 * @param bucket El índice de la cubeta.
+	 * @return El valor.
+	 */
+	private static long getUpperBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Resume el histograma en microsegundos.
+	 */
+	@Override
+	public String toString() {
+		return String.format("n=%d p50=%.1fus p99=%.1fus max=%.1fus", getCount(),
+				getPercentile(50) / 1000.0, getPercentile(99) / 1000.0, getMax() / 1000.0);
+	}
+
+}
@@ -1,78 +1,150 @@
 
 import javax.swing.JFrame;
-import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
-
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
-import javax.swing.table.DefaultTableModel;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class Leaderboard {
-    private static List<Jugador> jugadores;
+    // Compartida por todas las ventanas y por los hilos del servidor, que la
+    // actualizan a la vez sin bloquearse entre ellos
+    private static final LeaderboardIndex jugadores = new LeaderboardIndex();
+    // Mientras está abierto, cada cambio de la tabla se guarda en disco
+    private static volatile LeaderboardStore store;
     private JFrame leaderboardFrame;
     private JTable tablaJugadores;
+    private LeaderboardTableModel modeloTabla;
 
 
     public Leaderboard() {
+        // La ventana se crea una vez y se reutiliza cada vez que se muestra la tabla
+        modeloTabla = new LeaderboardTableModel(jugadores);
+        tablaJugadores = new JTable(modeloTabla);
+        leaderboardFrame = new JFrame("Tabla de Jugadores");
+        leaderboardFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        leaderboardFrame.getContentPane().add(new JScrollPane(tablaJugadores));
+
+        // Cerrada, la tabla no escucha los cambios ni guarda la instantánea
+        leaderboardFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                modeloTabla.close();
+            }
+        });
+    }
 
-        if (jugadores == null) {
-            jugadores = new ArrayList<>();
+    // Se queda con la mejor puntuación de cada jugador
+    public static void agregarJugador(Jugador jugador) {
+        // Evento JFR con la duración y el tamaño de la tabla después de agregarlo
+        GameEvents.LeaderboardAdd event = GameEvents.beginLeaderboardAdd();
+        if (jugadores.upsert(jugador)) {
+            try {
+                guardar(List.of(jugador));
+            } catch (IOException e) {
+                // La puntuación sigue en la tabla, aunque no se haya podido guardar
+                System.err.println("No se pudo guardar la puntuación de " + jugador.getNombre() + ": " + e);
+            }
+        }
+        if (event != null && event.shouldCommit()) {
+            event.player = jugador.getNombre();
+            event.score = jugador.getScore();
+            event.size = jugadores.size();
+            event.commit();
         }
+    }
 
-        leaderboardFrame = new JFrame("Tabla de Jugadores");
-        tablaJugadores = new JTable();
+    // Agrega un lote de jugadores, con un solo evento JFR y una sola escritura en disco
+    // para todo el lote. Vuelve cuando los cambios están guardados
+    public static void agregarJugadores(List<Jugador> lote) throws IOException {
+        GameEvents.LeaderboardBatch event = GameEvents.beginLeaderboardBatch();
+        guardar(actualizar(lote));
+        commit(event, lote);
     }
 
-    public static void agregarJugador(Jugador jugador) {
-        jugadores.stream().filter(j -> j.getNombre().equals(jugador.getNombre())).findFirst().ifPresentOrElse(j -> agregarOReemplazar(j, jugador), () -> jugadores.add(jugador));
+    // Igual, pero sin esperar a que se guarden: la tabla ya está actualizada al volver, y
+    // el resultado se completa cuando los cambios están en disco. Para los hilos que no
+    // pueden bloquearse, como los del servidor NIO
+    public static CompletableFuture<Void> agregarJugadoresAsync(List<Jugador> lote) {
+        GameEvents.LeaderboardBatch event = GameEvents.beginLeaderboardBatch();
+        List<Jugador> cambios = actualizar(lote);
+        LeaderboardStore actual = store;
+        CompletableFuture<Void> guardado = actual != null ? actual.appendAsync(cambios) : CompletableFuture.completedFuture(null);
+        commit(event, lote);
+        return guardado;
     }
 
-    private static void agregarOReemplazar(Jugador oldJugador, Jugador newJugador) {
-        if (oldJugador.getScore() < newJugador.getScore()) {
-            jugadores.remove(oldJugador);
-            jugadores.add(newJugador);
+    // Los jugadores del lote que han cambiado la tabla
+    private static List<Jugador> actualizar(List<Jugador> lote) {
+        List<Jugador> cambios = new ArrayList<>();
+        for (Jugador jugador : lote) {
+            if (jugadores.upsert(jugador)) {
+                cambios.add(jugador);
+            }
         }
+        return cambios;
     }
 
-    public void mostrarTabla() {
-        // Ordenar la lista de jugadores por puntuación de mayor a menor
-        jugadores.sort(Collections.reverseOrder());
-
-        // Crear un modelo de tabla
-        DefaultTableModel modeloTabla = new DefaultTableModel();
-        modeloTabla.addColumn("Nombre");
-        modeloTabla.addColumn("Puntuación");
+    private static void commit(GameEvents.LeaderboardBatch event, List<Jugador> lote) {
+        if (event != null && event.shouldCommit()) {
+            event.players = lote.size();
+            event.size = jugadores.size();
+            event.commit();
+        }
+    }
 
-        // Agregar los datos de los jugadores al modelo de tabla
-        for (Jugador jugador : jugadores) {
-            modeloTabla.addRow(new Object[]{jugador.getNombre(), jugador.getScore()});
+    private static void guardar(List<Jugador> cambios) throws IOException {
+        LeaderboardStore actual = store;
+        if (actual != null && !cambios.isEmpty()) {
+            actual.append(cambios);
         }
+    }
 
-        // Establecer el modelo de tabla en la JTable
-        tablaJugadores.setModel(modeloTabla);
+    // Carga la tabla guardada en dir y, desde ahora, guarda en disco cada cambio
+    public static synchronized void abrir(Path dir) throws IOException {
+        if (store == null) {
+            store = LeaderboardStore.open(dir, jugadores);
+        }
+    }
 
-        // Agregar la JTable a un JScrollPane
-        JScrollPane scrollPane = new JScrollPane(tablaJugadores);
+    public static synchronized void cerrar() throws IOException {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
 
-        // Agregar el JScrollPane al panel principal
-        JPanel panelPrincipal = new JPanel();
-        panelPrincipal.add(scrollPane);
+    // El índice, para consultar el top, la posición de un jugador o un rango de puntuaciones
+    public static LeaderboardIndex getIndex() {
+        return jugadores;
+    }
 
-        // Configurar la ventana y mostrarla
-        leaderboardFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
-        leaderboardFrame.getContentPane().add(panelPrincipal);
-        leaderboardFrame.pack();
-        leaderboardFrame.setLocationRelativeTo(null);
-        leaderboardFrame.setVisible(true);
+    // Se puede llamar desde cualquier hilo. Si la ventana ya está abierta, solo la trae
+    // al frente: la tabla se mantiene al día sola
+    public void mostrarTabla() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::mostrarTabla);
+            return;
+        }
+        if (!leaderboardFrame.isVisible()) {
+            modeloTabla.open();
+            leaderboardFrame.pack();
+            leaderboardFrame.setLocationRelativeTo(null);
+            leaderboardFrame.setVisible(true);
+        }
+        leaderboardFrame.toFront();
     }
 
     public List<Jugador> getJugadores() {
-        return jugadores.stream().sorted().toList();
+        return jugadores.snapshot();
     }
 }
 
@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Índice de la tabla de líderes que se puede actualizar y consultar desde muchos hilos
+// a la vez, sin bloqueos globales. Guarda la mejor puntuación de cada jugador en tres
+// estructuras:
+// - un mapa por nombre, que es el que decide cuál es la entrada actual de cada jugador
+// - un mapa ordenado por (puntuación de mayor a menor, nombre), para el top y los rangos
+// - un contador por puntuación, para saber cuántos jugadores hay por encima de una
+//   puntuación sin recorrerlos
+//
+// Las actualizaciones de un mismo nombre se hacen de una en una (dentro del compute
+// del mapa); las de nombres distintos, en paralelo. Mientras se cambia la entrada de un
+// jugador, el mapa ordenado puede tener un momento la entrada nueva y la vieja: las
+// consultas se saltan las que ya no son las del mapa.
+public class LeaderboardIndex {
+    // Puntuación de mayor a menor y, si empatan, nombre en orden alfabético
+    static final Comparator<Jugador> ORDER = (a, b) -> {
+        int c = Integer.compare(b.getScore(), a.getScore());
+        return c != 0 ? c : a.getNombre().compareTo(b.getNombre());
+    };
+
+    private final ConcurrentHashMap<String, Jugador> byName = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Jugador, Boolean> byScore = new ConcurrentSkipListMap<>(ORDER);
+    private final ScoreCounts counts = new ScoreCounts();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Se avisa después de cada cambio, desde el hilo que lo hizo. Dos cambios del mismo
+    // jugador en hilos distintos pueden llegar en otro orden: get() dice cuál es el actual
+    public interface Listener {
+        // old es null si el jugador no estaba
+        void changed(Jugador old, Jugador current);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Se queda con la mejor puntuación del jugador. Devuelve true si ha cambiado algo
+    public boolean upsert(Jugador jugador) {
+        Jugador[] previous = new Jugador[1];
+        Jugador current = byName.compute(jugador.getNombre(), (nombre, old) -> {
+            previous[0] = old;
+            if (old != null && old.getScore() >= jugador.getScore()) {
+                return old;
+            }
+            // Primero se agrega la nueva y luego se quita la vieja, para que el jugador
+            // no desaparezca de las consultas entre medias
+            byScore.put(jugador, Boolean.TRUE);
+            counts.add(jugador.getScore(), 1);
+            if (old != null) {
+                byScore.remove(old);
+                counts.add(old.getScore(), -1);
+            }
+            return jugador;
+        });
+        if (current == previous[0]) {
+            return false;
+        }
+        for (Listener listener : listeners) {
+            listener.changed(previous[0], current);
+        }
+        return true;
+    }
+
+    // Agrega jugadores sin nombres repetidos, como los de snapshot(), sin otros hilos
+    // usando el índice. Si está vacío no hace falta comparar con lo que ya había, así
+    // que es más rápido que upsert() uno a uno, pero no se avisa a los listeners
+    void load(List<Jugador> jugadores) {
+        if (!byName.isEmpty()) {
+            jugadores.forEach(this::upsert);
+            return;
+        }
+        for (Jugador jugador : jugadores) {
+            byName.put(jugador.getNombre(), jugador);
+            byScore.put(jugador, Boolean.TRUE);
+            counts.add(jugador.getScore(), 1);
+        }
+    }
+
+    public Jugador get(String nombre) {
+        return byName.get(nombre);
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    // Los k mejores jugadores, de mayor a menor puntuación
+    public List<Jugador> top(int k) {
+        return collect(byScore.navigableKeySet(), k);
+    }
+
+    // Los jugadores con puntuación entre min y max (ambas incluidas), de mayor a menor
+    public List<Jugador> range(int min, int max) {
+        if (min > max) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Jugador> range = byScore.navigableKeySet().tailSet(first(max), true);
+        if (min > Integer.MIN_VALUE) {
+            range = range.headSet(first(min - 1), false);
+        }
+        return collect(range, Integer.MAX_VALUE);
+    }
+
+    // Todos los jugadores, de mayor a menor puntuación
+    public List<Jugador> snapshot() {
+        return collect(byScore.navigableKeySet(), Integer.MAX_VALUE);
+    }
+
+    // La posición del jugador en la tabla (1 es el primero), o 0 si no está. Los que
+    // tienen más puntuación se cuentan con los contadores; solo se recorren los que
+    // empatan con él y van antes por nombre
+    public int rankOf(String nombre) {
+        Jugador jugador = byName.get(nombre);
+        if (jugador == null) {
+            return 0;
+        }
+        int rank = counts.countAbove(jugador.getScore()) + 1;
+        for (Jugador tie : byScore.navigableKeySet().subSet(first(jugador.getScore()), true, jugador, false)) {
+            if (isCurrent(tie)) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    // La primera entrada posible con esa puntuación: "" va antes que cualquier nombre
+    private static Jugador first(int score) {
+        return new Jugador("", score);
+    }
+
+    private boolean isCurrent(Jugador jugador) {
+        return byName.get(jugador.getNombre()) == jugador;
+    }
+
+    private List<Jugador> collect(NavigableSet<Jugador> set, int limit) {
+        List<Jugador> result = new ArrayList<>(Math.min(limit, 1024));
+        for (Jugador jugador : set) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (isCurrent(jugador)) {
+                result.add(jugador);
+            }
+        }
+        return result;
+    }
+
+    // Cuántos jugadores hay con cada puntuación, en un árbol de cuatro niveles con un
+    // nivel por byte de la puntuación. Cada nodo tiene 256 contadores con los jugadores
+    // que hay bajo cada hijo, así que contar los que tienen más puntuación que una dada
+    // suma como mucho 4 x 255 contadores, haya los jugadores que haya. Los nodos se
+    // crean cuando aparece la primera puntuación que cae en ellos
+    private static final class ScoreCounts {
+        private static final int LEVELS = 4;
+        private final Node root = new Node(0);
+
+        void add(int score, int delta) {
+            int key = score ^ Integer.MIN_VALUE;
+            Node node = root;
+            for (int level = 0; level < LEVELS; level++) {
+                int digit = digit(key, level);
+                node.counts.addAndGet(digit, delta);
+                if (level < LEVELS - 1) {
+                    node = node.child(digit);
+                }
+            }
+        }
+
+        int countAbove(int score) {
+            int key = score ^ Integer.MIN_VALUE;
+            int count = 0;
+            Node node = root;
+            for (int level = 0; level < LEVELS && node != null; level++) {
+                int digit = digit(key, level);
+                for (int d = digit + 1; d < 256; d++) {
+                    count += node.counts.get(d);
+                }
+                node = level < LEVELS - 1 ? node.children.get(digit) : null;
+            }
+            return count;
+        }
+
+        // Con el bit de signo invertido, el orden sin signo de key es el de las puntuaciones
+        private static int digit(int key, int level) {
+            return (key >>> (24 - 8 * level)) & 0xFF;
+        }
+
+        private static final class Node {
+            private final int level;
+            private final AtomicIntegerArray counts = new AtomicIntegerArray(256);
+            private final AtomicReferenceArray<Node> children;
+
+            Node(int level) {
+                this.level = level;
+                this.children = level < LEVELS - 1 ? new AtomicReferenceArray<>(256) : null;
+            }
+
+            Node child(int digit) {
+                Node child = children.get(digit);
+                if (child == null) {
+                    Node created = new Node(level + 1);
+                    child = children.compareAndSet(digit, null, created) ? created : children.get(digit);
+                }
+                return child;
+            }
+        }
+    }
+}
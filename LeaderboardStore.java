@@ -0,0 +1,546 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+// Guarda en disco la tabla de líderes. Cada cambio se añade a un registro
+// (leaderboard-N.log) que solo crece; cada entrada lleva su longitud y un CRC, así
+// que una escritura cortada a medias se detecta y se descarta al recuperar.
+//
+// Las escrituras se confirman en grupo: un solo hilo escribe el registro, y mientras
+// fuerza un grupo a disco, los demás dejan sus cambios en un búfer que el siguiente
+// force() confirma de una vez. Así no hay un fsync por puntuación, sino uno por grupo,
+// y quien no puede bloquearse (el servidor NIO) se entera con appendAsync. Si una escritura
+// falla, el registro puede haber quedado cortado a medias y lo que se añadiera detrás
+// se perdería al recuperar, así que el almacén queda inservible: ese grupo y todos los
+// cambios siguientes fallan con el error.
+//
+// Cuando el registro pasa de tetris.snapshot.bytes, se empieza un registro nuevo y se
+// escribe en segundo plano una instantánea de toda la tabla (leaderboard.snap), en un
+// fichero mapeado en memoria. Al arrancar se mapea la instantánea y solo se repiten
+// los registros posteriores a ella.
+//
+// Solo un proceso puede usar el directorio a la vez: open() bloquea leaderboard.lock
+// hasta close(), porque las instantáneas de uno borrarían los registros del otro.
+public class LeaderboardStore implements Closeable {
+    private static final String SNAPSHOT_FILE = "leaderboard.snap";
+    private static final String LOG_PREFIX = "leaderboard-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String LOCK_FILE = "leaderboard.lock";
+    private static final long SNAPSHOT_THRESHOLD = Long.getLong("tetris.snapshot.bytes", 16L << 20);
+
+    // Instantánea: MAGIC, versión, primer registro que no incluye (long), jugadores y
+    // CRC de las entradas. Cada entrada: puntuación, longitud del nombre y nombre en UTF-8
+    private static final int SNAPSHOT_MAGIC = 0x54534C42;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER = 24;
+
+    // Entrada del registro: longitud del contenido, CRC del contenido, puntuación y nombre.
+    // Una longitud mayor que MAX_RECORD solo puede ser una entrada dañada
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 1 << 20;
+
+    // El registro se repite por trozos de este tamaño, para que pueda ocupar más de 2 GB
+    private static final int REPLAY_BUFFER = 64 * 1024;
+
+    private final Path dir;
+    private final LeaderboardIndex index;
+    private final long threshold;
+    private final CRC32C crc = new CRC32C();
+    private final AtomicBoolean isSnapshotRunning = new AtomicBoolean();
+    private volatile Thread snapshotThread;
+
+    // Protegidos por pendingLock: los cambios aún no escritos, cuántos bytes se han
+    // entregado en total y cuántos están ya en disco, y quién espera a cada grupo
+    private final Object pendingLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+    private long durable;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private IOException failure;
+    private boolean isClosed;
+
+    // Solo los usa el hilo que escribe el registro
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private FileChannel log;
+    private long generation;
+    private Thread writer;
+
+    // Mientras está abierto, el bloqueo del directorio
+    private FileChannel lock;
+
+    // Quién espera a que el registro llegue hasta target
+    private static class Waiter {
+        final long target;
+        final CompletableFuture<Void> done;
+
+        Waiter(long target, CompletableFuture<Void> done) {
+            this.target = target;
+            this.done = done;
+        }
+    }
+
+    private LeaderboardStore(Path dir, LeaderboardIndex index, long threshold) {
+        this.dir = dir;
+        this.index = index;
+        this.threshold = threshold;
+    }
+
+    // Carga en el índice lo guardado en dir y lo deja listo para añadir cambios
+    public static LeaderboardStore open(Path dir, LeaderboardIndex index) throws IOException {
+        return open(dir, index, SNAPSHOT_THRESHOLD);
+    }
+
+    // Con otro tamaño a partir del cual se escribe una instantánea
+    static LeaderboardStore open(Path dir, LeaderboardIndex index, long threshold) throws IOException {
+        Files.createDirectories(dir);
+        LeaderboardStore store = new LeaderboardStore(dir, index, threshold);
+        store.lock = lock(dir);
+        try {
+            long first = 0;
+            Path snapshot = dir.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshot)) {
+                first = store.loadSnapshot(snapshot);
+            }
+
+            List<Long> generations = store.logGenerations();
+            long last = first;
+            for (long generation : generations) {
+                if (generation >= first) {
+                    store.replay(generation);
+                    last = generation;
+                }
+            }
+            store.generation = last;
+            store.log = store.openLog(last);
+            store.syncDirectory();
+        } catch (IOException | RuntimeException e) {
+            if (store.log != null) {
+                store.log.close();
+            }
+            store.lock.close();
+            throw e;
+        }
+
+        store.writer = new Thread(store::write, "LeaderboardLog");
+        store.writer.setDaemon(true);
+        store.writer.start();
+        return store;
+    }
+
+    // Bloquea el directorio, o falla si ya lo tiene otro proceso. Cerrar el canal
+    // suelta el bloqueo
+    private static FileChannel lock(Path dir) throws IOException {
+        Path path = dir.resolve(LOCK_FILE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Lo tiene otro LeaderboardStore de este mismo proceso
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        throw new IOException("La tabla de " + dir + " ya la está usando otro proceso");
+    }
+
+    // Añade los cambios al registro y vuelve cuando están en disco
+    public void append(List<Jugador> jugadores) throws IOException {
+        try {
+            appendAsync(jugadores).get();
+        } catch (InterruptedException e) {
+            // Los cambios se escribirán igualmente, pero no esperamos a que lleguen al disco
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido mientras se guardaba la tabla");
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    // Añade los cambios al registro sin esperar: el resultado se completa cuando están en
+    // disco, o con una IOException si no se pudieron escribir. Se completa en el hilo
+    // que escribe el registro, así que lo que se encadene a él debe ser breve
+    public CompletableFuture<Void> appendAsync(List<Jugador> jugadores) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (pendingLock) {
+            if (failure != null) {
+                done.completeExceptionally(failed());
+                return done;
+            }
+            if (isClosed) {
+                done.completeExceptionally(new IOException("El registro de la tabla está cerrado"));
+                return done;
+            }
+            if (jugadores.isEmpty()) {
+                done.complete(null);
+                return done;
+            }
+            for (Jugador jugador : jugadores) {
+                encode(jugador);
+            }
+            waiters.add(new Waiter(appended, done));
+            pendingLock.notify();
+        }
+        return done;
+    }
+
+    // El hilo que escribe el registro: cada vuelta escribe y fuerza a disco todo lo que
+    // se entregó mientras se escribía el grupo anterior
+    private void write() {
+        while (true) {
+            long end;
+            synchronized (pendingLock) {
+                while (appended == durable && !isClosed) {
+                    try {
+                        pendingLock.wait();
+                    } catch (InterruptedException e) {
+                        // Solo close() puede pararlo, después de escribir lo pendiente
+                    }
+                }
+                if (appended == durable) {
+                    return;
+                }
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                end = appended;
+            }
+
+            IOException error = null;
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    log.write(writing);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.clear();
+            }
+
+            List<Waiter> done = new ArrayList<>();
+            synchronized (pendingLock) {
+                if (error == null) {
+                    durable = end;
+                    while (!waiters.isEmpty() && waiters.peek().target <= end) {
+                        done.add(waiters.poll());
+                    }
+                } else {
+                    // Lo que se entregó mientras tanto ya no se escribirá
+                    failure = error;
+                    pending.clear();
+                    done.addAll(waiters);
+                    waiters.clear();
+                }
+            }
+            for (Waiter waiter : done) {
+                if (error == null) {
+                    waiter.done.complete(null);
+                } else {
+                    waiter.done.completeExceptionally(failed());
+                }
+            }
+            if (error != null) {
+                return;
+            }
+
+            try {
+                if (log.size() >= threshold && isSnapshotRunning.compareAndSet(false, true)) {
+                    startSnapshot();
+                }
+            } catch (IOException e) {
+                System.err.println("No se pudo consultar el tamaño del registro de la tabla: " + e);
+            }
+        }
+    }
+
+    // Con pendingLock
+    private IOException failed() {
+        return new IOException("No se pudo escribir el registro de la tabla", failure);
+    }
+
+    private void encode(Jugador jugador) {
+        byte[] nombre = jugador.getNombre().getBytes(StandardCharsets.UTF_8);
+        int length = 4 + nombre.length;
+        if (pending.remaining() < RECORD_HEADER + length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + RECORD_HEADER + length));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+
+        int start = pending.position();
+        pending.putInt(length).putInt(0).putInt(jugador.getScore()).put(nombre);
+        crc.reset();
+        crc.update(pending.array(), start + RECORD_HEADER, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        appended += RECORD_HEADER + length;
+    }
+
+    // En el hilo del registro: los cambios siguientes van a un registro nuevo, y la instantánea
+    // (que incluye todo lo anterior) se escribe en otro hilo
+    private void startSnapshot() {
+        // Si no se puede abrir el registro nuevo, se sigue con el actual
+        FileChannel next = null;
+        try {
+            next = openLog(generation + 1);
+            // Sin esto, tras un corte de luz podría faltar el fichero aunque sus entradas
+            // se hayan forzado a disco
+            syncDirectory();
+        } catch (IOException e) {
+            if (next != null) {
+                try {
+                    next.close();
+                } catch (IOException closeError) {
+                    // Ya no se usa
+                }
+            }
+            System.err.println("No se pudo empezar un registro nuevo de la tabla: " + e);
+            isSnapshotRunning.set(false);
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            // Ya está todo en disco
+        }
+        log = next;
+        generation++;
+
+        long first = generation;
+        Thread thread = new Thread(() -> {
+            try {
+                writeSnapshot(first);
+                deleteLogsBefore(first);
+            } catch (IOException e) {
+                System.err.println("No se pudo guardar la instantánea de la tabla: " + e);
+            } finally {
+                isSnapshotRunning.set(false);
+            }
+        }, "LeaderboardSnapshot");
+        thread.setDaemon(true);
+        snapshotThread = thread;
+        thread.start();
+    }
+
+    // La tabla ya tiene todo lo de los registros anteriores a first: los cambios se
+    // aplican al índice antes de añadirse al registro. Si tiene también algo de los
+    // siguientes, no importa: repetir un cambio no cambia la tabla
+    private void writeSnapshot(long first) throws IOException {
+        List<Jugador> jugadores = index.snapshot();
+        byte[][] nombres = new byte[jugadores.size()][];
+        long size = SNAPSHOT_HEADER;
+        for (int i = 0; i < nombres.length; i++) {
+            nombres[i] = jugadores.get(i).getNombre().getBytes(StandardCharsets.UTF_8);
+            size += 8 + nombres[i].length;
+        }
+
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.position(SNAPSHOT_HEADER);
+            for (int i = 0; i < nombres.length; i++) {
+                map.putInt(jugadores.get(i).getScore()).putInt(nombres[i].length).put(nombres[i]);
+            }
+
+            CRC32C snapshotCrc = new CRC32C();
+            snapshotCrc.update(map.duplicate().position(SNAPSHOT_HEADER).limit((int) size));
+            map.putInt(0, SNAPSHOT_MAGIC).putInt(4, SNAPSHOT_VERSION).putLong(8, first)
+                    .putInt(16, nombres.length).putInt(20, (int) snapshotCrc.getValue());
+            map.force();
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // El cambio de nombre tiene que estar en disco antes de borrar los registros
+        syncDirectory();
+    }
+
+    // Fuerza a disco las entradas del directorio (ficheros creados, renombrados o
+    // borrados). Windows no deja abrir un directorio, y allí no hace falta
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    // Devuelve el primer registro que hay que repetir después de la instantánea
+    private long loadSnapshot(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.limit() < SNAPSHOT_HEADER || map.getInt(0) != SNAPSHOT_MAGIC || map.getInt(4) != SNAPSHOT_VERSION) {
+                throw new IOException("La instantánea " + snapshot + " no es válida");
+            }
+            CRC32C snapshotCrc = new CRC32C();
+            snapshotCrc.update(map.duplicate().position(SNAPSHOT_HEADER));
+            if ((int) snapshotCrc.getValue() != map.getInt(20)) {
+                throw new IOException("La instantánea " + snapshot + " está dañada");
+            }
+
+            // No tiene nombres repetidos, así que se puede cargar de una vez
+            int count = map.getInt(16);
+            List<Jugador> jugadores = new ArrayList<>(count);
+            map.position(SNAPSHOT_HEADER);
+            byte[] nombre = new byte[64];
+            for (int i = 0; i < count; i++) {
+                int score = map.getInt();
+                int length = map.getInt();
+                if (length > nombre.length) {
+                    nombre = new byte[Math.max(length, nombre.length * 2)];
+                }
+                map.get(nombre, 0, length);
+                jugadores.add(new Jugador(new String(nombre, 0, length, StandardCharsets.UTF_8), score));
+            }
+            index.load(jugadores);
+            return map.getLong(8);
+        }
+    }
+
+    // Repite las entradas de un registro hasta la primera que esté incompleta o dañada
+    // (una escritura que se cortó), y corta el registro ahí
+    private void replay(long generation) throws IOException {
+        Path path = logPath(generation);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(REPLAY_BUFFER);
+            buffer.limit(0);
+
+            // valid: hasta dónde llegan las entradas correctas
+            long valid = 0;
+            while (true) {
+                int start = buffer.position();
+                if (buffer.remaining() >= RECORD_HEADER) {
+                    int length = buffer.getInt(start);
+                    if (length < 4 || length > MAX_RECORD || length > size - valid - RECORD_HEADER) {
+                        break;
+                    }
+                    if (buffer.remaining() >= RECORD_HEADER + length) {
+                        crc.reset();
+                        crc.update(buffer.array(), start + RECORD_HEADER, length);
+                        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                            break;
+                        }
+                        int score = buffer.getInt(start + RECORD_HEADER);
+                        String nombre = new String(buffer.array(), start + RECORD_HEADER + 4, length - 4, StandardCharsets.UTF_8);
+                        index.upsert(new Jugador(nombre, score));
+                        buffer.position(start + RECORD_HEADER + length);
+                        valid += RECORD_HEADER + length;
+                        continue;
+                    }
+                    if (RECORD_HEADER + length > buffer.capacity()) {
+                        // Una entrada que no cabe en el búfer
+                        ByteBuffer larger = ByteBuffer.allocate(RECORD_HEADER + length);
+                        larger.put(buffer).flip();
+                        buffer = larger;
+                    }
+                }
+
+                // La entrada sigue en el siguiente trozo
+                buffer.compact();
+                int n = channel.read(buffer);
+                buffer.flip();
+                if (n < 0) {
+                    break;
+                }
+            }
+
+            if (valid < size) {
+                System.err.println("Se descartan " + (size - valid) + " bytes incompletos de " + path);
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+    }
+
+    private FileChannel openLog(long generation) throws IOException {
+        return FileChannel.open(logPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path logPath(long generation) {
+        return dir.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // No es uno de nuestros registros
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private void deleteLogsBefore(long first) throws IOException {
+        for (long generation : logGenerations()) {
+            if (generation < first) {
+                Files.deleteIfExists(logPath(generation));
+            }
+        }
+    }
+
+    // Escribe lo que quede pendiente y espera también a la instantánea que esté en
+    // marcha, para poder volver a abrir dir
+    @Override
+    public void close() throws IOException {
+        synchronized (pendingLock) {
+            isClosed = true;
+            pendingLock.notify();
+        }
+        // El hilo del registro puede empezar una instantánea hasta que termina
+        boolean isInterrupted = join(writer);
+        isInterrupted |= join(snapshotThread);
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            log.close();
+        } finally {
+            lock.close();
+        }
+    }
+
+    // Espera a que termine el hilo aunque lo interrumpan, y dice si lo interrumpieron
+    private static boolean join(Thread thread) {
+        boolean isInterrupted = false;
+        while (thread != null && thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        return isInterrupted;
+    }
+}
@@ -0,0 +1,225 @@
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Modelo de la JTable de la tabla de líderes. No copia los datos en filas: guarda solo
+// las referencias de una instantánea ordenada del índice y cada celda se lee del
+// jugador cuando la tabla la pinta (que son solo las filas visibles).
+//
+// Mientras está abierto escucha los cambios del índice, que llegan desde cualquier
+// hilo, y los aplica en el EDT por grupos, moviendo solo las filas afectadas. Cada
+// cambio desplaza las filas siguientes, así que cuantas más filas hay, menos cambios se
+// aplican uno a uno: si se acumulan más, vuelve a tomar la instantánea entera. La
+// instantánea se toma fuera del EDT y solo se cambia por las filas al terminar. Cerrado,
+// no guarda nada.
+public class LeaderboardTableModel extends AbstractTableModel implements LeaderboardIndex.Listener {
+    private static final long serialVersionUID = 449935838439307705L;
+
+    private static final String[] COLUMNAS = {"Posición", "Nombre", "Puntuación"};
+
+    // Cada cuánto se aplican los cambios pendientes, cuántos se aplican uno a uno como
+    // mucho y cuántas filas se pueden desplazar en el EDT por grupo antes de que salga
+    // más a cuenta volver a tomar la instantánea
+    private static final int UPDATE_DELAY = 200;
+    private static final int MAX_INCREMENTAL = 256;
+    private static final int MAX_SHIFTED_ROWS = 4 << 20;
+
+    private final LeaderboardIndex index;
+    private final Timer timer;
+
+    // Cambios que aún no se han aplicado. Si pasan de MAX_INCREMENTAL no se guardan más:
+    // se vuelve a tomar la instantánea, que ya los incluye
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+    // Solo desde el EDT. loader es la instantánea que se está tomando, si hay alguna
+    private List<Jugador> rows = new ArrayList<>();
+    private boolean isOpen;
+    private SwingWorker<List<Jugador>, Void> loader;
+
+    public LeaderboardTableModel(LeaderboardIndex index) {
+        this.index = index;
+        this.timer = new Timer(UPDATE_DELAY, e -> applyChanges());
+        timer.setRepeats(false);
+    }
+
+    // Desde el EDT: empieza a escuchar los cambios y a tomar la instantánea. Se escucha
+    // antes de tomarla para no perder ningún cambio; los que ya estén en ella no cambian
+    // nada al aplicarse otra vez
+    public void open() {
+        if (isOpen) {
+            return;
+        }
+        isOpen = true;
+        index.addListener(this);
+        reload();
+    }
+
+    // Desde el EDT: deja de escuchar y suelta la instantánea
+    public void close() {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        index.removeListener(this);
+        timer.stop();
+        loader = null;
+        changes.clear();
+        pending.set(0);
+        rows = new ArrayList<>();
+        fireTableDataChanged();
+    }
+
+    // Desde cualquier hilo, así que solo apunta el cambio y programa su aplicación
+    @Override
+    public void changed(Jugador old, Jugador current) {
+        if (pending.incrementAndGet() <= MAX_INCREMENTAL) {
+            changes.add(new Change(old, current));
+        }
+        if (isScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(timer::restart);
+        }
+    }
+
+    private void applyChanges() {
+        isScheduled.set(false);
+        if (!isOpen || loader != null) {
+            // Los cambios esperan a la instantánea que se está tomando
+            return;
+        }
+        int count = pending.getAndSet(0);
+        if (count > maxIncremental()) {
+            changes.clear();
+            reload();
+            return;
+        }
+        Change change;
+        while ((change = changes.poll()) != null) {
+            apply(change);
+        }
+    }
+
+    // Los cambios de un mismo jugador pueden llegar desordenados, así que no se inserta
+    // change.current sino la entrada que el índice tiene ahora para ese jugador
+    private void apply(Change change) {
+        Jugador actual = index.get(change.current.getNombre());
+        if (change.old != null) {
+            remove(change.old);
+        }
+        if (change.current != actual) {
+            remove(change.current);
+        }
+        if (actual != null) {
+            insert(actual);
+        }
+    }
+
+    private void remove(Jugador jugador) {
+        int row = Collections.binarySearch(rows, jugador, LeaderboardIndex.ORDER);
+        if (row >= 0) {
+            rows.remove(row);
+            // La JTable repinta también las filas siguientes, cuya posición ha cambiado
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    private void insert(Jugador jugador) {
+        int row = Collections.binarySearch(rows, jugador, LeaderboardIndex.ORDER);
+        if (row < 0) {
+            row = -row - 1;
+            rows.add(row, jugador);
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    // Con las filas que hay, cuántos cambios se aplican uno a uno
+    private int maxIncremental() {
+        return Math.max(1, Math.min(MAX_INCREMENTAL, MAX_SHIFTED_ROWS / Math.max(1, rows.size())));
+    }
+
+    // Toma la instantánea fuera del EDT. Al terminar sustituye a las filas de una vez, y
+    // los cambios que llegaron mientras tanto se aplican en el siguiente grupo
+    private void reload() {
+        SwingWorker<List<Jugador>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<Jugador> doInBackground() {
+                return index.snapshot();
+            }
+
+            @Override
+            protected void done() {
+                if (loader != this) {
+                    // Se cerró la tabla mientras se tomaba
+                    return;
+                }
+                loader = null;
+                try {
+                    rows = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("No se pudo leer la tabla de líderes", e);
+                }
+                fireTableDataChanged();
+                // Con el retraso de siempre, para no tomar otra enseguida si siguen llegando
+                if (pending.get() > 0) {
+                    timer.restart();
+                }
+            }
+        };
+        loader = worker;
+        worker.execute();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNAS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 1 ? String.class : Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Jugador jugador = rows.get(row);
+        switch (column) {
+            case 0:
+                return row + 1;
+            case 1:
+                return jugador.getNombre();
+            default:
+                return jugador.getScore();
+        }
+    }
+
+    private static class Change {
+        private final Jugador old;
+        private final Jugador current;
+
+        Change(Jugador old, Jugador current) {
+            this.old = old;
+            this.current = current;
+        }
+    }
+}
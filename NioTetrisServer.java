@@ -0,0 +1,491 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Servidor de puntuaciones sin bloqueos: unos pocos hilos, cada uno con su Selector,
+// atienden todas las conexiones. Acepta los mismos protocolos que TetrisServer: el
+// binario de ScoreProtocol y el de texto (líneas con el nombre y la puntuación, y "."
+// para terminar). Los bucles nunca esperan al disco: cada lote se guarda en el hilo del
+// registro de la tabla, y su ACK se envía desde el bucle cuando ya está guardado.
+public class NioTetrisServer {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final int BACKLOG = 4096;
+    private static final byte[] ACK = "Recibido\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int loopCount;
+    private final ServerMetrics metrics;
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private int nextLoop;
+
+    public NioTetrisServer(int loopCount, ServerMetrics metrics) {
+        this.loopCount = Math.max(1, loopCount);
+        this.metrics = metrics;
+    }
+
+    // Abre el puerto y atiende conexiones hasta que se llame a stop()
+    public void start(int port) throws IOException {
+        bind(port);
+        run();
+    }
+
+    // Abre el puerto, sin atender todavía las conexiones
+    public void bind(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    // Atiende conexiones hasta que se llame a stop(). El primer bucle corre en el hilo
+    // que llama y también acepta las conexiones nuevas.
+    public void run() throws IOException {
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop();
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 1; i < loopCount; i++) {
+            Thread thread = new Thread(loops[i], "TetrisServer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        loops[0].run();
+    }
+
+    public void stop() throws IOException {
+        serverChannel.close();
+        if (loops != null) {
+            for (EventLoop loop : loops) {
+                loop.selector.close();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while (true) {
+            GameEvents.ServerAccept event = GameEvents.beginServerAccept();
+            if ((channel = serverChannel.accept()) == null) {
+                return;
+            }
+            if (event != null && event.shouldCommit()) {
+                event.remoteAddress = String.valueOf(channel.getRemoteAddress());
+                event.commit();
+            }
+
+            // Repartimos las conexiones entre los bucles por turnos
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            loops[nextLoop].add(channel);
+            nextLoop = (nextLoop + 1) % loops.length;
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        // Un solo búfer de lectura por bucle, compartido por todas sus conexiones
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        // Entrega una conexión nueva a este bucle desde cualquier hilo
+        void add(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        // Ejecuta una tarea en este bucle desde cualquier hilo
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    registerPending();
+                    runTasks();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            try {
+                                if (key.isReadable()) {
+                                    connection.read(readBuffer);
+                                }
+                                if (key.isValid() && key.isWritable()) {
+                                    connection.flush();
+                                }
+                            } catch (IOException e) {
+                                // Un cliente que falla no afecta a los demás
+                                metrics.error();
+                                System.err.println("Conexión cerrada (" + connection.remoteAddress + "): " + e);
+                                connection.close();
+                            }
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                // stop()
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void registerPending() throws IOException {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key, this));
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    // El estado de una conexión: el protocolo que usa, la línea o trama que se está
+    // leyendo, el nombre que espera su puntuación y la respuesta pendiente de enviar.
+    // Solo la usa su bucle
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final EventLoop loop;
+        private final String remoteAddress;
+        private byte[] line = new byte[64];
+        private int lineLength;
+        private String nombre;
+        private ByteBuffer reply;
+        // closing: ya no se lee más; isReplied: se cierra en cuanto se envíe lo pendiente
+        private boolean closing;
+        private boolean isReplied;
+        private long bytesRead;
+        private long lastBytesRead;
+
+        // El protocolo se decide con el primer byte: decoder solo existe con el binario
+        private boolean isText;
+        private ScoreProtocol.FrameDecoder decoder;
+        private boolean isHandshakeDone;
+        private int version;
+        private byte[] frame;
+
+        // Las puntuaciones recibidas que aún no se han agregado a la tabla, los lotes que
+        // se están guardando y las puntuaciones ya guardadas
+        private final List<Jugador> batch = new ArrayList<>();
+        private int saving;
+        private int accepted;
+        private int acknowledged;
+
+        // La respuesta final espera a que estén guardados todos los lotes. Sin
+        // finalReply, es el ACK final del protocolo binario
+        private boolean isFinishing;
+        private byte[] finalReply;
+
+        Connection(SocketChannel channel, SelectionKey key, EventLoop loop) throws IOException {
+            this.channel = channel;
+            this.key = key;
+            this.loop = loop;
+            this.remoteAddress = String.valueOf(channel.getRemoteAddress());
+            metrics.connectionOpened();
+        }
+
+        void read(ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n < 0) {
+                // Igual que el servidor con hilos, respondemos también si el cliente cierra sin terminar
+                if (decoder == null) {
+                    finish(ACK, ACK.length);
+                } else if (isHandshakeDone) {
+                    finish(null, 0);
+                } else {
+                    close();
+                }
+                return;
+            }
+            bytesRead += n;
+            metrics.bytesRead(n);
+            buffer.flip();
+
+            if (!isText && decoder == null && buffer.hasRemaining()) {
+                if (buffer.get(buffer.position()) == 0) {
+                    decoder = new ScoreProtocol.FrameDecoder();
+                    frame = new byte[ScoreProtocol.MAX_ENCODED_LENGTH];
+                } else {
+                    isText = true;
+                }
+            }
+            if (decoder != null) {
+                readFrames(buffer);
+            } else {
+                readLines(buffer);
+            }
+
+            // Agregamos a la tabla lo recibido en esta lectura, de una vez
+            if (!closing) {
+                applyBatch();
+            }
+        }
+
+        private void readLines(ByteBuffer buffer) throws IOException {
+            GameEvents.ServerRead event = GameEvents.beginServerRead();
+
+            // Decodificamos las líneas completas; el resto queda para la siguiente lectura
+            while (buffer.hasRemaining() && !closing) {
+                byte b = buffer.get();
+                if (b != '\n') {
+                    append(b);
+                    continue;
+                }
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+                lineLength = 0;
+
+                if (nombre == null && ".".equals(text)) {
+                    commitRead(event, buffer);
+                    finish(ACK, ACK.length);
+                } else if (nombre == null) {
+                    nombre = text;
+                } else {
+                    commitRead(event, buffer);
+                    try {
+                        addToBatch(new Jugador(nombre, Integer.parseInt(text)));
+                    } catch (NumberFormatException e) {
+                        // Una puntuación que no es un número se descarta, pero la conexión sigue
+                        metrics.error();
+                        System.err.println("Puntuación inválida de " + remoteAddress + ": " + text);
+                    }
+                    nombre = null;
+                    event = GameEvents.beginServerRead();
+                }
+            }
+        }
+
+        // Las tramas de ScoreProtocol se decodifican directamente del búfer de lectura;
+        // la que quede a medias sigue en el decodificador hasta la siguiente lectura
+        private void readFrames(ByteBuffer buffer) throws IOException {
+            GameEvents.ServerRead event = GameEvents.beginServerRead();
+            try {
+                while (buffer.hasRemaining() && !closing) {
+                    if (!isHandshakeDone) {
+                        if (!decoder.decodeHandshake(buffer)) {
+                            return;
+                        }
+                        isHandshakeDone = true;
+                        version = Math.min(decoder.getPeerVersion(), ScoreProtocol.VERSION);
+                        send(frame, ScoreProtocol.encodeHandshake(frame, 0, version));
+                        continue;
+                    }
+                    if (!decoder.decode(buffer)) {
+                        return;
+                    }
+
+                    int type = decoder.getType();
+                    if (type == ScoreProtocol.END) {
+                        commitRead(event, buffer);
+                        finish(null, 0);
+                    } else if (type == ScoreProtocol.SUBMIT) {
+                        int score = decoder.readVarint();
+                        addToBatch(new Jugador(decoder.readString(), score));
+                        commitRead(event, buffer);
+                        event = GameEvents.beginServerRead();
+                    } else {
+                        throw new ProtocolException("Tipo de trama desconocido: " + type);
+                    }
+                }
+            } catch (ProtocolException e) {
+                // Confirmamos lo que sí era válido y avisamos al cliente antes de cerrar
+                metrics.error();
+                System.err.println("Trama inválida de " + remoteAddress + ": " + e.getMessage());
+                finish(frame, ScoreProtocol.encodeError(frame, 0, ScoreProtocol.ERROR_MALFORMED, e.getMessage()));
+            }
+        }
+
+        private void addToBatch(Jugador jugador) {
+            batch.add(jugador);
+            if (batch.size() >= TetrisServer.BATCH_SIZE) {
+                applyBatch();
+            }
+        }
+
+        // Una sola actualización de la tabla por lote. El lote se confirma cuando ya está
+        // en disco; si no se puede guardar, no se confirma
+        private void applyBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            int size = batch.size();
+            CompletableFuture<Void> guardado = Leaderboard.agregarJugadoresAsync(batch);
+            batch.clear();
+            saving++;
+            guardado.whenComplete((ignored, error) -> loop.execute(() -> saved(size, error)));
+        }
+
+        // En el bucle, cuando un lote ya está guardado. Con la versión 2 se confirma
+        // enseguida; si la conexión está terminando, la respuesta final espera al último
+        private void saved(int size, Throwable error) {
+            saving--;
+            if (error != null) {
+                metrics.error();
+                System.err.println("No se pudieron guardar las puntuaciones de " + remoteAddress + ": " + error);
+                close();
+                return;
+            }
+            metrics.scoresReceived(size);
+            accepted += size;
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                if (isFinishing) {
+                    if (saving == 0) {
+                        sendFinalReply();
+                    }
+                } else if (version >= 2) {
+                    send(frame, ScoreProtocol.encodeAck(frame, 0, accepted));
+                    acknowledged = accepted;
+                }
+            } catch (IOException e) {
+                metrics.error();
+                System.err.println("Conexión cerrada (" + remoteAddress + "): " + e);
+                close();
+            }
+        }
+
+        // Deja de leer y envía la respuesta final en cuanto estén guardados todos los lotes
+        private void finish(byte[] bytes, int length) throws IOException {
+            if (isFinishing) {
+                return;
+            }
+            applyBatch();
+            closing = true;
+            isFinishing = true;
+            finalReply = (bytes == null) ? null : Arrays.copyOf(bytes, length);
+            if (saving == 0) {
+                sendFinalReply();
+            } else if (reply == null || !reply.hasRemaining()) {
+                key.interestOps(0);
+            }
+        }
+
+        // Antes de un error, con la versión 2, se confirma lo que sí se guardó
+        private void sendFinalReply() throws IOException {
+            if (finalReply == null) {
+                reply(frame, ScoreProtocol.encodeAck(frame, 0, accepted));
+                return;
+            }
+            if (version >= 2 && accepted > acknowledged) {
+                send(frame, ScoreProtocol.encodeAck(frame, 0, accepted));
+                acknowledged = accepted;
+            }
+            reply(finalReply, finalReply.length);
+        }
+
+        private void append(byte b) throws IOException {
+            if (lineLength == line.length) {
+                if (line.length >= MAX_LINE_LENGTH) {
+                    throw new IOException("Línea demasiado larga");
+                }
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+
+        // Los bytes del mensaje son los leídos desde el anterior, sin los que aún no se han decodificado
+        private void commitRead(GameEvents.ServerRead event, ByteBuffer buffer) {
+            long consumed = bytesRead - buffer.remaining();
+            if (event != null && event.shouldCommit()) {
+                event.remoteAddress = remoteAddress;
+                event.bytesRead = consumed - lastBytesRead;
+                event.commit();
+            }
+            lastBytesRead = consumed;
+        }
+
+        // Envía la respuesta y cierra la conexión en cuanto se haya enviado
+        private void reply(byte[] bytes, int length) throws IOException {
+            closing = true;
+            isReplied = true;
+            send(bytes, length);
+        }
+
+        // Los bytes se copian, así que el array se puede reutilizar enseguida
+        private void send(byte[] bytes, int length) throws IOException {
+            if (reply != null && reply.hasRemaining()) {
+                ByteBuffer joined = ByteBuffer.allocate(reply.remaining() + length);
+                joined.put(reply).put(bytes, 0, length).flip();
+                reply = joined;
+            } else {
+                reply = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+            }
+            flush();
+        }
+
+        void flush() throws IOException {
+            channel.write(reply);
+            if (reply.hasRemaining()) {
+                key.interestOps(closing ? SelectionKey.OP_WRITE : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else if (isReplied) {
+                close();
+            } else {
+                key.interestOps(closing ? 0 : SelectionKey.OP_READ);
+            }
+        }
+
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            // Lo que llegó antes de un error también se agrega, aunque ya no se confirme
+            applyBatch();
+            metrics.connectionClosed();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ya estaba cerrada
+            }
+        }
+    }
+}
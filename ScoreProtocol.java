@@ -0,0 +1,256 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Protocolo binario para enviar puntuaciones. Al conectar, el cliente envía un saludo
+// (MAGIC y la versión más alta que entiende) y el servidor responde con el mismo
+// MAGIC y la versión que se usará. Después, cada mensaje es una trama:
+//
+//   longitud (varint) | tipo (1 byte) | contenido
+//
+// donde la longitud cuenta el tipo y el contenido. Los números son varints sin signo
+// de 7 bits por byte, y los textos van en UTF-8 hasta el final de la trama.
+//
+// Versión 1: el servidor solo responde con un ACK al final. Versión 2: el cliente
+// puede enviar puntuaciones sin esperar, y el servidor responde con un ACK acumulado
+// cada vez que agrega un lote a la tabla, con el número de la última puntuación
+// agregada (la primera SUBMIT de la conexión es la 1).
+//
+// Una línea del protocolo de texto nunca empieza por un byte 0, así que el servidor
+// sabe con el primer byte qué protocolo usa cada cliente.
+public final class ScoreProtocol {
+    static final byte[] MAGIC = {0, 'T', 'S'};
+    static final int VERSION = 2;
+    static final int HANDSHAKE_LENGTH = MAGIC.length + 1;
+
+    // Longitud máxima del tipo y el contenido de una trama, y de una trama completa
+    static final int MAX_FRAME_LENGTH = 1024;
+    static final int MAX_ENCODED_LENGTH = MAX_FRAME_LENGTH + 2;
+
+    // Cliente -> servidor: puntuación (varint) y nombre (texto)
+    static final int SUBMIT = 1;
+    // Servidor -> cliente: puntuaciones agregadas en la conexión hasta ahora (varint)
+    static final int ACK = 2;
+    // Servidor -> cliente: código (varint) y mensaje (texto). El servidor cierra después
+    static final int ERROR = 3;
+    // Cliente -> servidor: no hay más puntuaciones. El servidor responde con ACK y cierra
+    static final int END = 4;
+
+    // Código de ERROR para tramas mal formadas o de un tipo desconocido
+    static final int ERROR_MALFORMED = 1;
+
+    private ScoreProtocol() {
+    }
+
+    static int encodeHandshake(byte[] buffer, int position, int version) {
+        System.arraycopy(MAGIC, 0, buffer, position, MAGIC.length);
+        buffer[position + MAGIC.length] = (byte) version;
+        return position + HANDSHAKE_LENGTH;
+    }
+
+    static int encodeSubmit(byte[] buffer, int position, String nombre, int score) {
+        return encode(buffer, position, SUBMIT, true, score, nombre.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int encodeAck(byte[] buffer, int position, int count) {
+        return encode(buffer, position, ACK, true, count, null);
+    }
+
+    static int encodeError(byte[] buffer, int position, int code, String message) {
+        return encode(buffer, position, ERROR, true, code, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int encodeEnd(byte[] buffer, int position) {
+        return encode(buffer, position, END, false, 0, null);
+    }
+
+    // Escribe una trama completa a partir de position y devuelve dónde termina
+    private static int encode(byte[] buffer, int position, int type, boolean hasValue, int value, byte[] text) {
+        int length = 1 + (hasValue ? varintSize(value) : 0) + (text != null ? text.length : 0);
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Trama demasiado larga: " + length + " bytes");
+        }
+        position = putVarint(buffer, position, length);
+        buffer[position++] = (byte) type;
+        if (hasValue) {
+            position = putVarint(buffer, position, value);
+        }
+        if (text != null) {
+            System.arraycopy(text, 0, buffer, position, text.length);
+            position += text.length;
+        }
+        return position;
+    }
+
+    static int putVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Lee del stream hasta que el decodificador tiene el saludo completo
+    static void readHandshake(InputStream in, ByteBuffer buffer, FrameDecoder decoder) throws IOException {
+        while (!decoder.decodeHandshake(buffer)) {
+            if (!fill(in, buffer)) {
+                throw new EOFException("Conexión cerrada durante el saludo");
+            }
+        }
+    }
+
+    // Lee del stream hasta que el decodificador tiene una trama completa. Devuelve
+    // false si el stream termina justo entre dos tramas
+    static boolean readFrame(InputStream in, ByteBuffer buffer, FrameDecoder decoder) throws IOException {
+        while (!decoder.decode(buffer)) {
+            if (!fill(in, buffer)) {
+                if (decoder.isIdle()) {
+                    return false;
+                }
+                throw new EOFException("Conexión cerrada a mitad de una trama");
+            }
+        }
+        return true;
+    }
+
+    // El búfer debe tener un array y quedar consumido antes de volver a llenarlo.
+    // Devuelve false si el stream ha terminado
+    static boolean fill(InputStream in, ByteBuffer buffer) throws IOException {
+        int n = in.read(buffer.array());
+        if (n < 0) {
+            return false;
+        }
+        buffer.clear();
+        buffer.limit(n);
+        return true;
+    }
+
+    // Decodifica las tramas de una conexión a medida que llegan los bytes, que pueden
+    // venir partidos en cualquier número de lecturas. Reutiliza su array para todas
+    // las tramas, así que solo se crean objetos para los textos
+    static final class FrameDecoder {
+        private final byte[] frame = new byte[MAX_FRAME_LENGTH];
+        private int frameLength = -1;
+        private int received;
+        private int lengthValue;
+        private int lengthShift;
+        private int position;
+        private int peerVersion;
+
+        // El último texto leído, para no crear otro String si se repite (por ejemplo,
+        // varias puntuaciones del mismo jugador)
+        private byte[] lastText;
+        private String lastString;
+
+        // Consume el saludo del otro extremo. Devuelve true cuando está completo
+        boolean decodeHandshake(ByteBuffer buffer) throws ProtocolException {
+            while (received < HANDSHAKE_LENGTH && buffer.hasRemaining()) {
+                frame[received++] = buffer.get();
+            }
+            if (received < HANDSHAKE_LENGTH) {
+                return false;
+            }
+            received = 0;
+            if (!Arrays.equals(frame, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                throw new ProtocolException("Saludo no válido");
+            }
+            peerVersion = frame[MAGIC.length] & 0xFF;
+            if (peerVersion == 0) {
+                throw new ProtocolException("Versión no válida: 0");
+            }
+            return true;
+        }
+
+        // La versión que envió el otro extremo en su saludo
+        int getPeerVersion() {
+            return peerVersion;
+        }
+
+        // Consume bytes hasta completar una trama. Devuelve true si hay una trama
+        // completa, que se puede leer hasta la siguiente llamada
+        boolean decode(ByteBuffer buffer) throws ProtocolException {
+            if (received == frameLength) {
+                // La trama anterior ya se entregó
+                frameLength = -1;
+                received = 0;
+                lengthValue = 0;
+                lengthShift = 0;
+            }
+            while (frameLength < 0) {
+                if (!buffer.hasRemaining()) {
+                    return false;
+                }
+                int b = buffer.get();
+                lengthValue |= (b & 0x7F) << lengthShift;
+                lengthShift += 7;
+                if ((b & 0x80) == 0) {
+                    if (lengthValue < 1 || lengthValue > MAX_FRAME_LENGTH) {
+                        throw new ProtocolException("Longitud de trama no válida: " + lengthValue);
+                    }
+                    frameLength = lengthValue;
+                } else if (lengthShift >= 14) {
+                    // MAX_FRAME_LENGTH cabe en dos bytes
+                    throw new ProtocolException("Trama demasiado larga");
+                }
+            }
+
+            int n = Math.min(buffer.remaining(), frameLength - received);
+            buffer.get(frame, received, n);
+            received += n;
+            if (received < frameLength) {
+                return false;
+            }
+            position = 1;
+            return true;
+        }
+
+        // Si no hay ninguna trama a medias
+        boolean isIdle() {
+            return received == frameLength || (frameLength < 0 && lengthShift == 0);
+        }
+
+        int getType() {
+            return frame[0] & 0xFF;
+        }
+
+        int readVarint() throws ProtocolException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= frameLength) {
+                    throw new ProtocolException("Trama incompleta");
+                }
+                int b = frame[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ProtocolException("Varint demasiado largo");
+        }
+
+        // Lee el texto que ocupa el resto de la trama
+        String readString() {
+            int start = position;
+            position = frameLength;
+            if (lastText == null || !Arrays.equals(frame, start, frameLength, lastText, 0, lastText.length)) {
+                lastText = Arrays.copyOfRange(frame, start, frameLength);
+                lastString = new String(lastText, StandardCharsets.UTF_8);
+            }
+            return lastString;
+        }
+    }
+}
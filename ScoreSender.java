@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Envía las puntuaciones al servidor desde un hilo propio, para que el bucle de juego
+// nunca espere a la red. submit() solo deja la puntuación en una cola acotada; el
+// hilo la vacía por lotes sobre una conexión que se mantiene abierta y, si falla,
+// vuelve a conectar y reintenta el lote con esperas cada vez más largas.
+public class ScoreSender implements Runnable {
+    private static final int QUEUE_CAPACITY = Integer.getInteger("tetris.sender.queue", 256);
+    private static final int MAX_BATCH = 64;
+    private static final long INITIAL_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 10000;
+    private static final int ACK_TIMEOUT = 10000;
+
+    private final Supplier<String> host;
+    private final int port;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+
+    // Desde que se llama a submit() hasta que el servidor confirma el lote. Solo lo
+    // escribe el hilo de envío
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    // Puntuaciones aceptadas por submit() que aún no se han enviado: las de la cola y
+    // las del lote que se está enviando. close() espera en idle a que llegue a 0
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Object idle = new Object();
+
+    // Solo los usa el hilo de envío
+    private TetrisClient client;
+    private String connectedHost;
+
+    // El host se consulta en cada lote, así que puede cambiar mientras el juego está
+    // en marcha (null es la máquina local)
+    public ScoreSender(Supplier<String> host, int port) {
+        this.host = host;
+        this.port = port;
+        this.thread = new Thread(this, "ScoreSender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // No bloquea nunca. Devuelve false si la cola está llena y la puntuación se descarta
+    public boolean submit(Jugador jugador) {
+        outstanding.incrementAndGet();
+        if (queue.offer(new Pending(jugador, System.nanoTime()))) {
+            return true;
+        }
+        done(1);
+        dropped.increment();
+        return false;
+    }
+
+    public void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+                sendWithRetry(batch);
+                done(batch.size());
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close(): un último intento con lo que quede, sin reintentos
+            queue.drainTo(batch);
+            try {
+                if (!batch.isEmpty()) {
+                    send(batch);
+                }
+                if (client != null) {
+                    client.stopConnection();
+                }
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("No se pudieron enviar " + batch.size() + " puntuaciones al cerrar: " + ex);
+            }
+        }
+    }
+
+    private void sendWithRetry(List<Pending> batch) throws InterruptedException {
+        long backoff = INITIAL_BACKOFF;
+        while (true) {
+            try {
+                send(batch);
+                return;
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                System.err.println("Error al enviar puntuaciones, reintento en " + backoff + " ms: " + e);
+                disconnect();
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
+    // Todo el lote va en una sola escritura, y se espera una sola confirmación del
+    // servidor para todo el lote. Si no llega, el lote se reintenta entero: agregar
+    // otra vez la misma puntuación no cambia la tabla. Los servidores que solo
+    // confirman al terminar (texto o versión 1) usan una conexión por lote
+    private void send(List<Pending> batch) throws IOException {
+        String target = host.get();
+        if (client != null && !Objects.equals(target, connectedHost)) {
+            // El jugador ha elegido otro servidor
+            disconnect();
+        }
+        if (client == null) {
+            TetrisClient connection = new TetrisClient();
+            connection.startConnection(target, port);
+            client = connection;
+            connectedHost = target;
+        }
+
+        for (Pending pending : batch) {
+            client.sendScore(pending.jugador.getNombre(), pending.jugador.getScore());
+        }
+        client.flush();
+        client.awaitAcknowledged(ACK_TIMEOUT);
+        if (client.isClosed()) {
+            client = null;
+        }
+
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            sendLatency.record(now - pending.time);
+        }
+        sent.add(batch.size());
+    }
+
+    private void done(int count) {
+        if (outstanding.addAndGet(-count) == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            // Ya estaba cerrada
+        }
+        client = null;
+    }
+
+    // Espera como mucho timeoutMillis a que se envíe todo lo aceptado (lo de la cola y
+    // el lote en curso) y para el hilo. Si se envió todo a tiempo, el hilo está esperando
+    // en la cola y solo le queda cerrar la conexión; si no, lo que quede se intenta una
+    // vez más sin reintentos, mientras quede tiempo
+    public void close(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+        synchronized (idle) {
+            long remaining;
+            while (outstanding.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                idle.wait(Math.max(1, remaining / 1000000L));
+            }
+        }
+        thread.interrupt();
+        thread.join(Math.max(1, (deadline - System.nanoTime()) / 1000000L));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("enviadas=%d en cola=%d descartadas=%d fallos=%d latencia: %s",
+                getSent(), getQueueDepth(), getDropped(), getFailures(), sendLatency);
+    }
+
+    private static class Pending {
+        private final Jugador jugador;
+        private final long time;
+
+        Pending(Jugador jugador, long time) {
+            this.jugador = jugador;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Contadores del servidor de puntuaciones, para comparar los modos de ejecución
+// (hilos, hilos virtuales, NIO) con la misma carga. Se pueden actualizar y leer
+// desde cualquier hilo.
+public class ServerMetrics {
+    private final long startTime = System.nanoTime();
+    private final LongAdder connections = new LongAdder();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+    private final LongAdder scores = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public void connectionOpened() {
+        connections.increment();
+        int active = activeConnections.incrementAndGet();
+        peakConnections.accumulateAndGet(active, Math::max);
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    public void scoreReceived() {
+        scores.increment();
+    }
+
+    public void scoresReceived(int count) {
+        scores.add(count);
+    }
+
+    public void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getPeakConnections() {
+        return peakConnections.get();
+    }
+
+    public long getScores() {
+        return scores.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    // Puntuaciones recibidas por segundo desde que arrancó el servidor
+    public double getScoresPerSecond() {
+        return getScores() * 1e9 / Math.max(1, System.nanoTime() - startTime);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("conexiones=%d activas=%d pico=%d puntuaciones=%d (%.1f/s) bytes=%d errores=%d",
+                getConnections(), getActiveConnections(), getPeakConnections(), getScores(),
+                getScoresPerSecond(), getBytesRead(), getErrors());
+    }
+}
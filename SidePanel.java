@@ -1,8 +1,11 @@
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
 
 import javax.swing.JPanel;
 
@@ -19,6 +22,11 @@ public class SidePanel extends JPanel {
 	 */
 	private static final long serialVersionUID = 2181495598854992747L;
 
+	/**
+	 * The width of the panel.
+	 */
+	public static final int PANEL_WIDTH = 200;
+	
 	/**
 	 * The dimensions of each tile on the next piece preview.
 	 */
@@ -91,77 +99,110 @@ public class SidePanel extends JPanel {
 	private static final Color DRAW_COLOR = new Color(128, 192, 128);
 	
 	/**
-	 * The Tetris instance.
+	 * The game engine whose state is displayed. It's only used to find out what
+	 * changed, from the game loop's thread; painting uses {@code snapshots}.
 	 */
-	private Tetris tetris;
+	private GameEngine engine;
+	
+	/**
+	 * The snapshots of the engine's state that are drawn.
+	 */
+	private SnapshotBuffer snapshots;
+	
+	/**
+	 * The frame metrics, which time painting this panel.
+	 */
+	private FrameMetrics metrics;
+	
+	/**
+	 * The pre-rendered tiles for the next piece preview.
+	 */
+	private TileSprites sprites;
+	
+	/**
+	 * Everything on the panel that doesn't change from frame to frame.
+	 */
+	private CachedLayer background;
+	
+	/**
+	 * The versions of the engine's state that were last repainted.
+	 */
+	private int statsVersion, stateVersion;
 	
 	/**
 	 * Creates a new SidePanel and sets it's display properties.
-	 * @param tetris The Tetris instance to use.
+	 * @param engine The game engine to display.
+	 * @param snapshots The snapshots of the engine's state to draw.
+	 * @param metrics The frame metrics to record painting in.
 	 */
-	public SidePanel(Tetris tetris) {
-		this.tetris = tetris;
+	public SidePanel(GameEngine engine, SnapshotBuffer snapshots, FrameMetrics metrics) {
+		this.engine = engine;
+		this.snapshots = snapshots;
+		this.metrics = metrics;
+		this.sprites = new TileSprites(TILE_SIZE, SHADE_WIDTH);
+		this.stateVersion = engine.getStateVersion() - 1;
+		this.background = new CachedLayer(PANEL_WIDTH, BoardPanel.PANEL_HEIGHT, Transparency.OPAQUE, SidePanel::drawBackground);
 		
-		setPreferredSize(new Dimension(200, BoardPanel.PANEL_HEIGHT));
+		setPreferredSize(new Dimension(PANEL_WIDTH, BoardPanel.PANEL_HEIGHT));
 		setBackground(Color.WHITE);
 	}
 	
+	/**
+	 * Requests a repaint only if the stats, the next piece or the state of the
+	 * game have changed since the last time this was called. This must be called from
+	 * the game loop's thread, after the latest snapshot has been published.
+	 */
+	public void repaintChanges() {
+		if(engine.getStatsVersion() != statsVersion || engine.getStateVersion() != stateVersion) {
+			this.statsVersion = engine.getStatsVersion();
+			this.stateVersion = engine.getStateVersion();
+			repaint();
+		}
+	}
+	
 	@Override
 	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
-		
-		//Set the color for drawing.
-		g.setColor(DRAW_COLOR);
+		render(g, getGraphicsConfiguration(), snapshots.acquire(EventQueue.getCurrentEvent()));
+	}
+	
+	/**
+	 * Draws the entire panel. This is used both to paint the panel and by
+	 * {@code ActiveRenderer}, which draws onto its own buffer.
+	 * @param g The graphics object.
+	 * @param config The graphics configuration being drawn to, or null if it isn't known.
+	 * @param snapshot The state of the game to draw, the same one the board is drawn from.
+	 */
+	public void render(Graphics g, GraphicsConfiguration config, GameSnapshot snapshot) {
+		long start = metrics.start();
 		
 		/*
-		 * This variable stores the current y coordinate of the string.
-		 * This way we can re-order, add, or remove new strings if necessary
-		 * without needing to change the other strings.
+		 * Draw the labels, the controls and the preview box, which never change. The
+		 * layer is opaque and covers the whole panel, so it doesn't need to be cleared first.
 		 */
-		int offset;
+		background.draw(g, 0, 0, config);
 		
 		/*
-		 * Draw the "Stats" category.
+		 * Draw the stats.
 		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("ESTADO", SMALL_INSET, offset = STATS_INSET);
-		g.setFont(SMALL_FONT);
-		g.drawString("Nivel: " + tetris.getLevel(), LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("Puntuacion: " + tetris.getScore(), LARGE_INSET, offset += TEXT_STRIDE);
-		
-		/*
-		 * Draw the "Controls" category.
-		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("Controles", SMALL_INSET, offset = CONTROLS_INSET);
+		g.setColor(DRAW_COLOR);
 		g.setFont(SMALL_FONT);
-		g.drawString("A - Mover a la izquierda", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("D - Mover a la derecha", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("Q - Girar en sentido contrario", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("E - Girar", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("S - Caer rapido", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("P - Pausar el juego", LARGE_INSET, offset += TEXT_STRIDE);
-		
-		/*
-		 * Draw the next piece preview box.
-		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("Proxima Pieza:", SMALL_INSET,70);
-		g.drawRect(SQUARE_CENTER_X - SQUARE_SIZE, SQUARE_CENTER_Y - SQUARE_SIZE, SQUARE_SIZE * 2, SQUARE_SIZE * 2);
+		g.drawString("Nivel: " + snapshot.getLevel(), LARGE_INSET, STATS_INSET + TEXT_STRIDE);
+		g.drawString("Puntuacion: " + snapshot.getScore(), LARGE_INSET, STATS_INSET + TEXT_STRIDE * 2);
 		
 		/*
 		 * Draw a preview of the next piece that will be spawned. The code is pretty much
 		 * identical to the drawing code on the board, just smaller and centered, rather
 		 * than constrained to a grid.
 		 */
-		TileType type = tetris.getNextPieceType();
-		if(!tetris.isGameOver() && type != null) {
+		TileType type = snapshot.getNextPieceType();
+		if(!snapshot.isGameOver() && type != null) {
+			sprites.validate(config);
+			
 			/*
 			 * Get the size properties of the current piece.
 			 */
 			int cols = type.getCols();
 			int rows = type.getRows();
-			int dimension = type.getDimension();
 		
 			/*
 			 * Calculate the top left corner (origin) of the piece.
@@ -179,47 +220,73 @@ public class SidePanel extends JPanel {
 			/*
 			 * Loop through the piece and draw it's tiles onto the preview.
 			 */
-			for(int row = 0; row < dimension; row++) {
-				for(int col = 0; col < dimension; col++) {
-					if(type.isTile(col, row, 0)) {
-						drawTile(type, startX + ((col - left) * TILE_SIZE), startY + ((row - top) * TILE_SIZE), g);
-					}
-				}
+			for(int i = 0; i < type.getTileCount(); i++) {
+				int col = type.getTileX(i, 0);
+				int row = type.getTileY(i, 0);
+				drawTile(type, startX + ((col - left) * TILE_SIZE), startY + ((row - top) * TILE_SIZE), g);
 			}
 		}
+		
+		metrics.record(FrameMetrics.Phase.PAINT_SIDE, start);
 	}
 	
 	/**
-	 * Draws a tile onto the preview window.
-	 * @param type The type of tile to draw.
-	 * @param x The x coordinate of the tile.
-	 * @param y The y coordinate of the tile.
+	 * Draws the parts of the panel that never change: the background, the
+	 * category labels, the controls and the next piece preview box.
 	 * @param g The graphics object.
 	 */
-	private void drawTile(TileType type, int x, int y, Graphics g) {
+	private static void drawBackground(Graphics g) {
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, PANEL_WIDTH, BoardPanel.PANEL_HEIGHT);
+		
+		//Set the color for drawing.
+		g.setColor(DRAW_COLOR);
+		
 		/*
-		 * Fill the entire tile with the base color.
+		 * This variable stores the current y coordinate of the string.
+		 * This way we can re-order, add, or remove new strings if necessary
+		 * without needing to change the other strings.
 		 */
-		g.setColor(type.getBaseColor());
-		g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+		int offset;
 		
 		/*
-		 * Fill the bottom and right edges of the tile with the dark shading color.
+		 * Draw the "Stats" category. The stats themselves change, so they are
+		 * drawn every frame by paintComponent.
 		 */
-		g.setColor(type.getDarkColor());
-		g.fillRect(x, y + TILE_SIZE - SHADE_WIDTH, TILE_SIZE, SHADE_WIDTH);
-		g.fillRect(x + TILE_SIZE - SHADE_WIDTH, y, SHADE_WIDTH, TILE_SIZE);
+		g.setFont(LARGE_FONT);
+		g.drawString("ESTADO", SMALL_INSET, STATS_INSET);
 		
 		/*
-		 * Fill the top and left edges with the light shading. We draw a single line
-		 * for each row or column rather than a rectangle so that we can draw a nice
-		 * looking diagonal where the light and dark shading meet.
+		 * Draw the "Controls" category.
 		 */
-		g.setColor(type.getLightColor());
-		for(int i = 0; i < SHADE_WIDTH; i++) {
-			g.drawLine(x, y + i, x + TILE_SIZE - i - 1, y + i);
-			g.drawLine(x + i, y, x + i, y + TILE_SIZE - i - 1);
-		}
+		g.setFont(LARGE_FONT);
+		g.drawString("Controles", SMALL_INSET, offset = CONTROLS_INSET);
+		g.setFont(SMALL_FONT);
+		g.drawString("A - Mover a la izquierda", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("D - Mover a la derecha", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("Q - Girar en sentido contrario", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("E - Girar", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("S - Caer rapido", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("W - Caida instantanea", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("P - Pausar el juego", LARGE_INSET, offset += TEXT_STRIDE);
+		
+		/*
+		 * Draw the next piece preview box.
+		 */
+		g.setFont(LARGE_FONT);
+		g.drawString("Proxima Pieza:", SMALL_INSET,70);
+		g.drawRect(SQUARE_CENTER_X - SQUARE_SIZE, SQUARE_CENTER_Y - SQUARE_SIZE, SQUARE_SIZE * 2, SQUARE_SIZE * 2);
+	}
+	
+	/**
+	 * Draws a tile onto the preview window.
+	 * @param type The type of tile to draw.
+	 * @param x The x coordinate of the tile.
+	 * @param y The y coordinate of the tile.
+	 * @param g The graphics object.
+	 */
+	private void drawTile(TileType type, int x, int y, Graphics g) {
+		g.drawImage(sprites.getTile(type), x, y, null);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,317 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongFunction;
+
+/**
+ * La clase {@code SimulationRunner} juega muchas partidas independientes sin
+ * pantalla, repartidas entre los hilos de un {@link ForkJoinPool}, y resume sus
+ * resultados. Cada partida tiene su propio {@link GameEngine}, su propia semilla
+ * y su propia {@link InputPolicy}, así que los hilos no comparten nada mutable.
+ *
+ * Las partidas se juegan ciclo lógico a ciclo lógico con {@link GameEngine#step}, o,
+ * si se indica una velocidad de fotogramas, fotograma a fotograma con un
+ * {@link GameLoop} y un {@link VirtualClock}: igual que en la ventana del juego,
+ * con la caída rápida y la espera tras fijar una pieza, pero sin esperar.
+ *
+ */
+public class SimulationRunner {
+
+	/**
+	 * El número de partidas por debajo del cual una tarea deja de dividirse
+	 * y juega sus partidas directamente.
+	 */
+	private static final int BATCH_SIZE = 16;
+
+	/**
+	 * El número de partidas a jugar.
+	 */
+	private final int games;
+
+	/**
+	 * La semilla base. La partida {@code i} usa la semilla {@code seed + i}.
+	 */
+	private final long seed;
+
+	/**
+	 * El número máximo de ciclos lógicos (o de fotogramas) por partida, para que
+	 * una política que nunca pierde no bloquee la simulación.
+	 */
+	private final int maxSteps;
+
+	/**
+	 * El número de fotogramas por segundo de tiempo simulado, o 0 para jugar
+	 * ciclo lógico a ciclo lógico.
+	 */
+	private final int frameRate;
+
+	/**
+	 * Crea la política de entradas de cada partida a partir de su semilla.
+	 */
+	private final LongFunction<InputPolicy> policies;
+
+	/**
+	 * Crea un nuevo simulador.
+	 * @param games El número de partidas a jugar.
+	 * @param seed La semilla base de las partidas.
+	 * @param maxSteps El número máximo de ciclos lógicos por partida.
+	 * @param policies Crea la política de entradas de cada partida a partir de su semilla.
+	 */
+	public SimulationRunner(int games, long seed, int maxSteps, LongFunction<InputPolicy> policies) {
+		this(games, seed, maxSteps, policies, 0);
+	}
+
+	/**
+	 * Crea un nuevo simulador que juega las partidas fotograma a fotograma. La política
+	 * elige una entrada por fotograma, y la caída rápida se mantiene mientras siga
+	 * eligiendo {@code SOFT_DROP}.
+	 * @param games El número de partidas a jugar.
+	 * @param seed La semilla base de las partidas.
+	 * @param maxFrames El número máximo de fotogramas por partida.
+	 * @param policies Crea la política de entradas de cada partida a partir de su semilla.
+	 * @param frameRate El número de fotogramas por segundo de tiempo simulado, o 0 para
+	 * jugar ciclo lógico a ciclo lógico.
+	 */
+	public SimulationRunner(int games, long seed, int maxFrames, LongFunction<InputPolicy> policies, int frameRate) {
+		this.games = games;
+		this.seed = seed;
+		this.maxSteps = maxFrames;
+		this.policies = policies;
+		this.frameRate = frameRate;
+	}
+
+	/**
+	 * Juega todas las partidas en el pool indicado y espera a que terminen.
+	 * @param pool El pool en el que se reparten las partidas.
+	 * @return El resumen de los resultados.
+	 */
+	public Result run(ForkJoinPool pool) {
+		int[] scores = new int[games];
+		int[] lines = new int[games];
+		int[] pieces = new int[games];
+		int[] steps = new int[games];
+
+		long start = System.nanoTime();
+		pool.invoke(new Batch(0, games, scores, lines, pieces, steps));
+		long elapsed = System.nanoTime() - start;
+
+		return new Result(elapsed, scores, lines, pieces, steps);
+	}
+
+	/**
+	 * Juega una sola partida hasta que termina o alcanza el límite de ciclos.
+	 * @param game El índice de la partida.
+	 * @param scores Donde guardar la puntuación final.
+	 * @param lines Donde guardar las líneas eliminadas.
+	 * @param pieces Donde guardar las piezas fijadas.
+	 * @param steps Donde guardar los ciclos (o fotogramas) jugados.
+	 */
+	private void play(int game, int[] scores, int[] lines, int[] pieces, int[] steps) {
+		GameEngine engine = new GameEngine(seed + game);
+		InputPolicy policy = policies.apply(seed + game);
+
+		int step = 0;
+		if(frameRate == 0) {
+			engine.reset();
+			while(!engine.isGameOver() && step < maxSteps) {
+				engine.step(policy.nextInput(engine));
+				step++;
+			}
+		} else {
+			/*
+			 * El reloj virtual avanza exactamente un fotograma cada vez, así que el
+			 * temporizador lógico cuenta los mismos ciclos que en tiempo real.
+			 */
+			VirtualClock clock = new VirtualClock();
+			GameLoop loop = new GameLoop(engine, clock);
+			long nanosPerFrame = 1000000000L / frameRate;
+			loop.reset();
+			while(!engine.isGameOver() && step < maxSteps) {
+				GameEngine.Input input = policy.nextInput(engine);
+				if(input != GameEngine.Input.SOFT_DROP) {
+					loop.setSoftDrop(false);
+				}
+				loop.applyInput(input);
+				loop.frame();
+				clock.advance(nanosPerFrame);
+				step++;
+			}
+		}
+
+		scores[game] = engine.getScore();
+		lines[game] = engine.getLines();
+		pieces[game] = engine.getPieces();
+		steps[game] = step;
+	}
+
+	/**
+	 * Una tarea que juega un rango de partidas, dividiéndolo en mitades mientras
+	 * sea grande. Cada tarea escribe solo en sus propios índices de los arreglos.
+	 */
+	private class Batch extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+		private final int[] scores, lines, pieces, steps;
+
+		Batch(int from, int to, int[] scores, int[] lines, int[] pieces, int[] steps) {
+			this.from = from;
+			this.to = to;
+			this.scores = scores;
+			this.lines = lines;
+			this.pieces = pieces;
+			this.steps = steps;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= BATCH_SIZE) {
+				for(int game = from; game < to; game++) {
+					play(game, scores, lines, pieces, steps);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Batch(from, mid, scores, lines, pieces, steps),
+					new Batch(mid, to, scores, lines, pieces, steps));
+		}
+	}
+
+	/**
+	 * El resumen de una simulación: rendimiento y distribución de los resultados.
+	 */
+	public static class Result {
+
+		private final long elapsedNanos;
+		private final int[] scores, lines, pieces, steps;
+
+		Result(long elapsedNanos, int[] scores, int[] lines, int[] pieces, int[] steps) {
+			this.elapsedNanos = elapsedNanos;
+			this.scores = sorted(scores);
+			this.lines = sorted(lines);
+			this.pieces = sorted(pieces);
+			this.steps = sorted(steps);
+		}
+
+		/**
+		 * Obtiene el número de partidas jugadas.
+		 * @return Las partidas.
+		 */
+		public int getGames() {
+			return scores.length;
+		}
+
+		/**
+		 * Obtiene el número de partidas jugadas por segundo.
+		 * @return Las partidas por segundo.
+		 */
+		public double getGamesPerSecond() {
+			return scores.length * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * Obtiene el número de piezas fijadas por segundo, sumando todas las partidas.
+		 * @return Las piezas por segundo.
+		 */
+		public double getPiecesPerSecond() {
+			return sum(pieces) * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * Obtiene un percentil de las puntuaciones finales.
+		 * @param p El percentil, entre 0 y 1.
+		 * @return La puntuación.
+		 */
+		public int getScore(double p) {
+			return percentile(scores, p);
+		}
+
+		/**
+		 * Obtiene un percentil de las líneas eliminadas por partida.
+		 * @param p El percentil, entre 0 y 1.
+		 * @return Las líneas.
+		 */
+		public int getLines(double p) {
+			return percentile(lines, p);
+		}
+
+		/**
+		 * Obtiene un percentil de la duración de las partidas, en piezas fijadas.
+		 * @param p El percentil, entre 0 y 1.
+		 * @return Las piezas.
+		 */
+		public int getPieces(double p) {
+			return percentile(pieces, p);
+		}
+
+		/**
+		 * Obtiene un percentil de la duración de las partidas, en ciclos lógicos (o fotogramas).
+		 * @param p El percentil, entre 0 y 1.
+		 * @return Los ciclos.
+		 */
+		public int getSteps(double p) {
+			return percentile(steps, p);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%d partidas en %.1f ms (%.0f partidas/s, %.0f piezas/s)%n",
+					getGames(), elapsedNanos / 1e6, getGamesPerSecond(), getPiecesPerSecond()));
+			sb.append(String.format("%-12s %8s %8s %8s %8s %8s %10s%n", "", "min", "p10", "p50", "p90", "max", "media"));
+			row(sb, "Puntuacion", scores);
+			row(sb, "Lineas", lines);
+			row(sb, "Piezas", pieces);
+			row(sb, "Ciclos", steps);
+			return sb.toString();
+		}
+
+		private static void row(StringBuilder sb, String name, int[] values) {
+			sb.append(String.format("%-12s %8d %8d %8d %8d %8d %10.1f%n", name,
+					percentile(values, 0.0), percentile(values, 0.1), percentile(values, 0.5),
+					percentile(values, 0.9), percentile(values, 1.0), (double) sum(values) / values.length));
+		}
+
+		private static int[] sorted(int[] values) {
+			int[] copy = values.clone();
+			Arrays.sort(copy);
+			return copy;
+		}
+
+		private static int percentile(int[] sorted, double p) {
+			if(sorted.length == 0) {
+				return 0;
+			}
+			return sorted[(int) Math.round(p * (sorted.length - 1))];
+		}
+
+		private static long sum(int[] values) {
+			long total = 0;
+			for(int value : values) {
+				total += value;
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * Juega un lote de partidas con la política aleatoria y muestra el resumen.
+	 * @param args [partidas] [hilos] [semilla] [fotogramas por segundo, o 0 para jugar por ciclos]
+	 */
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long seed = (args.length > 2) ? Long.parseLong(args[2]) : 0L;
+		int frameRate = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+
+		SimulationRunner runner = new SimulationRunner(games, seed, 1_000_000, InputPolicy::random, frameRate);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			System.out.print(runner.run(pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
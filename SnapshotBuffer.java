@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * La clase {@code SnapshotBuffer} pasa copias del estado de la partida del hilo
+ * lógico al hilo que pinta, sin bloqueos y sin crear objetos. Es un triple búfer:
+ * de las tres copias, una la rellena el hilo lógico, otra la está leyendo el
+ * pintor, y la tercera es la última publicada. Publicar y adquirir solo
+ * intercambian índices a través de un único {@code AtomicInteger}, así que
+ * ninguno de los dos hilos espera al otro y el pintor nunca ve una copia a medias.
+ *
+ * Solo un hilo debe publicar (el que modifica el motor) y solo un hilo debe
+ * adquirir (el EDT, una vez por pase de pintado, o el hilo de {@code ActiveRenderer},
+ * una vez por fotograma).
+ *
+ */
+public class SnapshotBuffer {
+
+	/**
+	 * Se activa en {@code middle} cuando la copia del medio aún no ha sido adquirida.
+	 */
+	private static final int FRESH = 4;
+
+	/**
+	 * Máscara para obtener el índice de una copia.
+	 */
+	private static final int INDEX = 3;
+
+	/**
+	 * Las tres copias.
+	 */
+	private final GameSnapshot[] snapshots;
+
+	/**
+	 * El índice de la última copia publicada, más {@code FRESH} si el pintor aún
+	 * no la ha adquirido.
+	 */
+	private final AtomicInteger middle;
+
+	/**
+	 * El índice de la copia que está rellenando el hilo lógico. Solo lo usa ese hilo.
+	 */
+	private int back;
+
+	/**
+	 * El índice de la copia que está leyendo el pintor. Solo lo usa ese hilo.
+	 */
+	private int front;
+	
+	/**
+	 * El pase de pintado en el que se adquirió la copia actual. Solo lo usa el EDT.
+	 */
+	private Object pass;
+
+	/**
+	 * Crea un nuevo búfer en el que las tres copias contienen el estado actual del motor.
+	 * @param engine El motor.
+	 */
+	public SnapshotBuffer(GameEngine engine) {
+		this.snapshots = new GameSnapshot[3];
+		for(int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = new GameSnapshot();
+			snapshots[i].capture(engine);
+		}
+		this.back = 0;
+		this.middle = new AtomicInteger(1);
+		this.front = 2;
+	}
+
+	/**
+	 * Copia el estado actual del motor y lo publica como la copia más reciente.
+	 * Solo debe llamarse desde el hilo que modifica el motor.
+	 * @param engine El motor.
+	 */
+	public void publish(GameEngine engine) {
+		snapshots[back].capture(engine);
+		this.back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Obtiene la copia más reciente. La copia devuelta no cambia hasta la siguiente
+	 * llamada a este método, así que el pintor debe llamarlo una sola vez por
+	 * fotograma y dibujar todo el fotograma con la misma copia. Solo debe llamarse
+	 * desde el hilo que pinta.
+	 * @return La copia.
+	 */
+	public GameSnapshot acquire() {
+		if((middle.get() & FRESH) != 0) {
+			this.front = middle.getAndSet(front) & INDEX;
+		}
+		return snapshots[front];
+	}
+
+	/**
+	 * Obtiene la copia más reciente la primera vez que se llama en un pase de pintado,
+	 * y la misma copia el resto del pase. Swing pinta en un mismo pase todo lo que se
+	 * pidió repintar hasta entonces, así que los paneles que se pintan juntos dibujan
+	 * la misma copia, sin que el bucle tenga que avisar al EDT en cada fotograma. Solo
+	 * debe llamarse desde el EDT.
+	 * @param pass El evento que se está atendiendo ({@code EventQueue.getCurrentEvent()}),
+	 *  o null si no se sabe: entonces se adquiere siempre.
+	 * @return La copia.
+	 */
+	public GameSnapshot acquire(Object pass) {
+		if(pass == null || pass != this.pass) {
+			this.pass = pass;
+			return acquire();
+		}
+		return snapshots[front];
+	}
+
+}
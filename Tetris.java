@@ -1,7 +1,9 @@
 import java.awt.BorderLayout;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Random;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.BitSet;
 import javax.swing.JOptionPane;
 import java.io.IOException;
 
@@ -9,8 +11,9 @@ import java.io.IOException;
 import javax.swing.JFrame;
 
 /**
- * La clase {@code Tetris} es responsable del manejo de gran parte de la
- * logica del juego y de la lectura de los inputs del usuario.
+ * La clase {@code Tetris} es la ventana del juego: ejecuta el bucle de juego en
+ * tiempo real y traduce los inputs del usuario en entradas para el
+ * {@link GameEngine}, que contiene la logica del juego.
  *
  */
 public class Tetris extends JFrame {
@@ -25,14 +28,21 @@ public class Tetris extends JFrame {
 	private Leaderboard leaderboard = new Leaderboard();
 
 	/**
-	 * El número de milisegundos por fotograma.
+	 * El número de fotogramas por segundo. Se configura con la propiedad del sistema
+	 * {@code tetris.fps}.
 	 */
-	private static final long FRAME_TIME = 1000L / 50L;
+	private static final int FRAME_RATE = Integer.getInteger("tetris.fps", 50);
 	
 	/**
-	 * El número de piezas existentes.
+	 * El motor que contiene el estado y las reglas de la partida.
 	 */
-	private static final int TYPE_COUNT = TileType.values().length;
+	private GameEngine engine;
+	
+	/**
+	 * Las copias del estado del juego que el bucle de juego publica en cada fotograma
+	 * y a partir de las cuales se pinta.
+	 */
+	private SnapshotBuffer snapshots;
 		
 	/**
 	 * La instancia del panel de tablero (BoardPanel).
@@ -45,83 +55,77 @@ public class Tetris extends JFrame {
 	private SidePanel side;
 	
 	/**
-	 * Indica si el juego está pausado o no.
+	 * El renderizador activo, o null si el juego se pinta mediante el repintado de Swing.
+	 * Se activa con la propiedad del sistema {@code tetris.activeRendering=true}.
 	 */
-	private boolean isPaused;
+	private ActiveRenderer renderer;
 	
 	/**
-	 * Indica si hemos jugado una partida aún. Se establece en verdadero
-	 * inicialmente y luego se establece en falso cuando comienza el juego.
+	 * Avanza la partida en cada fotograma según el temporizador lógico.
 	 */
-	private boolean isNewGame;
+	private GameLoop loop;
 	
 	/**
-	 * Indica si el juego ha terminado.
+	 * Limita el bucle de juego a {@code FRAME_RATE} fotogramas por segundo.
 	 */
-	public boolean isGameOver;
+	private final FrameLimiter frameLimiter = new FrameLimiter(FRAME_RATE);
 	
 	/**
-	 * El nivel actual en el que nos encontramos.
+	 * Las métricas de rendimiento de cada fotograma. Se activan con la tecla F3 o con la
+	 * propiedad del sistema {@code tetris.metrics=true}, y mientras están activas se
+	 * muestran sobre el tablero.
 	 */
-	private int level;
+	private final FrameMetrics metrics = new FrameMetrics(Boolean.getBoolean("tetris.metrics"));
 	
 	/**
-	 * La puntuación actual.
+	 * Las teclas pulsadas y soltadas en el EDT que aún no ha aplicado el bucle de juego.
 	 */
-	private int score;
+	private final InputQueue inputs = new InputQueue();
 	
 	/**
-	 * El generador de números aleatorios. Se utiliza para
-	 * generar piezas de forma aleatoria.
+	 * Las teclas que están pulsadas, según los eventos que ha aplicado el bucle de juego.
 	 */
-	private Random random;
+	private final BitSet heldKeys = new BitSet(256);
 	
 	/**
-	 * El reloj que maneja la lógica de actualización.
-	 */
-	private Clock logicTimer;
-				
-	/**
-	 * El tipo de pieza actual.
+	 * El tiempo que tarda cada tecla en aplicarse desde que la recibe el EDT.
 	 */
-	private TileType currentType;
+	private final LatencyHistogram inputLatency = new LatencyHistogram();
 	
 	/**
-	 * El siguiente tipo de pieza.
+	 * El retardo antes de que una tecla de movimiento pulsada empiece a repetirse (DAS), en
+	 * nanosegundos. Se configura en milisegundos con la propiedad del sistema {@code tetris.das}.
 	 */
-	private TileType nextType;
-		
-	/**
-	 * La columna actual de nuestra pieza.
-	 */
-	private int currentCol;
+	private final long dasNanos = Integer.getInteger("tetris.das", 167) * 1000000L;
 	
 	/**
-	 * La fila actual de nuestra pieza.
+	 * El intervalo entre cada repetición de una tecla de movimiento (ARR), en nanosegundos.
+	 * Se configura en milisegundos con la propiedad del sistema {@code tetris.arr}.
 	 */
-	private int currentRow;
+	private final long arrNanos = Math.max(1, Integer.getInteger("tetris.arr", 33)) * 1000000L;
 	
 	/**
-	 * La rotación actual de nuestra pieza.
+	 * La dirección en la que se repite el movimiento de la pieza: -1 a la izquierda,
+	 * 1 a la derecha, o 0 si no se mantiene pulsada ninguna tecla de movimiento.
 	 */
-	private int currentRotation;
-		
+	private int shiftDirection;
+	
 	/**
-	 * Asegura que pase cierta cantidad de tiempo después de que se
-	 * genere una pieza antes de que podamos dejarla caer.
+	 * El instante de la siguiente repetición del movimiento, de {@code System.nanoTime()}.
 	 */
-	private int dropCooldown;
+	private long nextShift;
 	
 	/**
-	 * La velocidad del juego.
+	 * Envía las puntuaciones al servidor en segundo plano.
 	 */
-	private float gameSpeed;
-		
+	private final ScoreSender scoreSender;
+				
 	/**
 	 * Crea una nueva instancia de Tetris. Configura las propiedades de la ventana
 	 * y agrega un controlador de eventos.
+	 * @param multijugador La ventana donde se elige el servidor al que se envían las puntuaciones.
 	 */
-	private Tetris() {
+	private Tetris(Multijugador multijugador) {
 		/*
 		 * Establece las propiedades básicas de la ventana.
 		 */
@@ -131,130 +135,79 @@ public class Tetris extends JFrame {
 		setResizable(false);
 		
 		/*
-		 * Inicializa las instancias del panel de tablero (BoardPanel) y del panel lateral (SidePanel).
+		 * Inicializa el motor del juego y las instancias del panel de tablero (BoardPanel) y
+		 * del panel lateral (SidePanel) que lo muestran.
+		 */
+		this.engine = new GameEngine();
+		this.scoreSender = new ScoreSender(multijugador::getIp, multijugador.getPort());
+		
+		/*
+		 * Al cerrar la ventana, da un momento para que se envíen las puntuaciones pendientes.
 		 */
-		this.board = new BoardPanel(this);
-		this.side = new SidePanel(this);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				scoreSender.close(1000);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		this.loop = new GameLoop(engine, TimeSource.SYSTEM);
+		this.snapshots = new SnapshotBuffer(engine);
+		this.board = new BoardPanel(engine, snapshots, metrics);
+		this.side = new SidePanel(engine, snapshots, metrics);
 		
 		/*
 		 * Agrega las instancias del panel de tablero (BoardPanel) y del panel lateral (SidePanel) a la ventana.
+		 * En el modo de renderizado activo, en cambio, los paneles solo se usan para dibujar sobre un
+		 * Canvas desde su propio hilo, sin pasar por el EDT.
 		 */
-		add(board, BorderLayout.CENTER);
-		add(side, BorderLayout.EAST);
+		if(Boolean.getBoolean("tetris.activeRendering")) {
+			this.renderer = new ActiveRenderer(board, side, snapshots);
+			setIgnoreRepaint(true);
+			add(renderer, BorderLayout.CENTER);
+		} else {
+			add(board, BorderLayout.CENTER);
+			add(side, BorderLayout.EAST);
+		}
 		
 		/*
-		 * Agrega un KeyListener anónimo personalizado al marco (frame).
+		 * Agrega un KeyListener anónimo personalizado al marco (frame). Las teclas no se aplican
+		 * aquí, en el EDT, sino que se encolan con el instante en que se recibieron, y el bucle
+		 * de juego las aplica al principio del siguiente fotograma (ver processInput). Así el
+		 * motor solo se modifica desde un hilo.
 		 */
 		addKeyListener(new KeyAdapter() {
 			
 			@Override
 			public void keyPressed(KeyEvent e) {
-								
-				switch(e.getKeyCode()) {
-				
-				/*
-				 * Soltar - Cuando se presiona, verificamos que el juego no esté pausado
-				 * y que no haya un tiempo de espera para soltar, luego establecemos el
-				 * temporizador lógico para que se ejecute a una velocidad de 25 ciclos por segundo.
-				 */
-				case KeyEvent.VK_S:
-					if(!isPaused && dropCooldown == 0) {
-						logicTimer.setCyclesPerSecond(25.0f);
-					}
-					break;
-					
-				/*
-				 * Mover a la izquierda - Cuando se presiona, verificamos que el juego no esté pausado
-				 * y que la posición a la izquierda de la posición actual sea válida. Si es así, decrementamos
-				 * la columna actual en 1.
-				 */
-				case KeyEvent.VK_A:
-					if(!isPaused && board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
-						currentCol--;
-					}
-					break;
-					
-				/*
-				 * Mover a la derecha - Cuando se presiona, verificamos que el juego no esté pausado
-				 * y que la posición a la derecha de la posición actual sea válida. Si es así, incrementamos
-				 * la columna actual en 1.
-				 */
-				case KeyEvent.VK_D:
-					if(!isPaused && board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
-						currentCol++;
-					}
-					break;
-					
-				/*
-				 * Rotar en sentido contrario a las agujas del reloj - Cuando se presiona, verificamos que el juego no esté pausado
-				 * y luego intentamos rotar la pieza en sentido contrario a las agujas del reloj. Debido al tamaño y
-				 * complejidad del código de rotación, así como a su similitud con la rotación en el sentido de las agujas del reloj,
-				 * el código para la rotación de la pieza se maneja en otro método.
-				 */
-				case KeyEvent.VK_Q:
-					if(!isPaused) {
-						rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
-					}
-					break;
-				
-				/*
-				 * Rotar en el sentido de las agujas del reloj - Cuando se presiona, verificamos que el juego no esté pausado
-				 * y luego intentamos rotar la pieza en el sentido de las agujas del reloj. Debido al tamaño y
-				 * complejidad del código de rotación, así como a su similitud con la rotación en sentido contrario a las agujas del reloj,
-				 * el código para la rotación de la pieza se maneja en otro método.
-				 */
-				case KeyEvent.VK_E:
-					if(!isPaused) {
-						rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
-					}
-					break;
-					
-				/*
-				 * Pausar el juego - Cuando se presiona, verificamos que estemos jugando actualmente.
-				 * Si es así, cambiamos el estado de pausa (isPaused) y actualizamos el temporizador lógico
-				 * para reflejar este cambio. De lo contrario, el juego ejecutará una gran cantidad de actualizaciones y esencialmente
-				 * causará un "game over" instantáneo al reanudar el juego si permanecemos en pausa durante más de
-				 * un minuto aproximadamente.
-				*/
-				case KeyEvent.VK_P:
-					if(!isGameOver && !isNewGame) {
-						isPaused = !isPaused;
-						logicTimer.setPaused(isPaused);
-					}
-					break;
-				
-				/*
-				 * Iniciar el juego - Cuando se presiona, verificamos si estamos en el estado de "game over" o "new game".
- 				 * Si es así, reiniciamos el juego.
-				 */
-				case KeyEvent.VK_ENTER:
-					if(isGameOver || isNewGame) {
-						resetGame();
-					}
-					break;
-
-				 case KeyEvent.VK_L: // Detectar la tecla “L”
-				 	leaderboard.mostrarTabla(); // Mostrar el leaderboard
-				 	break;
-				
+				if(e.getKeyCode() == KeyEvent.VK_L) {
+					leaderboard.mostrarTabla(); // Mostrar el leaderboard
+				} else if(e.getKeyCode() == KeyEvent.VK_F3) {
+					metrics.setEnabled(!metrics.isEnabled()); // Mostrar u ocultar las métricas
+				} else {
+					inputs.offer(e.getKeyCode(), true, System.nanoTime());
 				}
 			}
 			
 			@Override
 			public void keyReleased(KeyEvent e) {
-				
-				switch(e.getKeyCode()) {
-				
-				/*
-				 * Soltar - Cuando se suelta, establecemos la velocidad del temporizador lógico
-				 * a la velocidad actual del juego y eliminamos cualquier ciclo que aún esté transcurriendo.
-				 */
-				case KeyEvent.VK_S:
-					logicTimer.setCyclesPerSecond(gameSpeed);
-					logicTimer.reset();
-					break;
-				}
-				
+				inputs.offer(e.getKeyCode(), false, System.nanoTime());
+			}
+			
+		});
+		
+		/*
+		 * Si la ventana pierde el foco no recibiremos las teclas que se suelten, así que las
+		 * damos todas por soltadas para que la pieza no siga moviéndose sola.
+		 */
+		addWindowFocusListener(new WindowAdapter() {
+			
+			@Override
+			public void windowLostFocus(WindowEvent e) {
+				long now = System.nanoTime();
+				inputs.offer(KeyEvent.VK_A, false, now);
+				inputs.offer(KeyEvent.VK_D, false, now);
+				inputs.offer(KeyEvent.VK_S, false, now);
 			}
 			
 		});
@@ -266,6 +219,10 @@ public class Tetris extends JFrame {
 		pack();
 		setLocationRelativeTo(null);
 		setVisible(true);
+		
+		if(renderer != null) {
+			renderer.start();
+		}
 	}
 	
 	/**
@@ -273,56 +230,54 @@ public class Tetris extends JFrame {
  	*/
 	private void startGame() {
 		/*
-		* Inicializamos nuestro generador de números aleatorios, temporizador lógico y variables de nuevo juego.
-		*/
-		this.random = new Random();
-		this.isNewGame = true;
-		this.gameSpeed = 1.0f;
-		
-		/*
-		* Configuramos el temporizador para evitar que el juego se ejecute antes de que el usuario presione enter
-		* para iniciarlo.
+		* El temporizador lógico del bucle empieza pausado para evitar que el juego se
+		* ejecute antes de que el usuario presione enter para iniciarlo.
 		*/
-		this.logicTimer = new Clock(gameSpeed);
-		logicTimer.setPaused(true);
+		frameLimiter.reset();
 		
 		while(true) {
 			
-			// Obtenemos el tiempo en que se inició el frame.
-			long start = System.nanoTime();
+			// Medimos cada fase del frame si las métricas están activas.
+			long frameStart = metrics.start();
+			
+			// Y el frame entero como evento JFR, si se está grabando.
+			GameEvents.Frame frameEvent = GameEvents.beginFrame();
+			long ticks = loop.getTicks();
+			int pieces = engine.getPieces();
 			
-			// Actualizamos el temporizador lógico.
-			logicTimer.update();
+			// Aplicamos las teclas pulsadas desde el último frame.
+			processInput();
+			long phaseStart = metrics.record(FrameMetrics.Phase.INPUT, frameStart);
 			
 			/*
-			* Si ha transcurrido un ciclo en el temporizador, podemos actualizar el juego y
-			* mover nuestra pieza actual hacia abajo.
+			* Actualizamos el temporizador lógico y, por cada ciclo que haya transcurrido,
+			* movemos nuestra pieza actual hacia abajo.
 			*/
-			if(logicTimer.hasElapsedCycle()) {
-				updateGame();
-			}
-		
-			// Decrementamos la "drop cooldown" si es necesario.
-			if(dropCooldown > 0) {
-				dropCooldown--;
+			if(loop.frame()) {
+				pieceLocked();
 			}
+			phaseStart = metrics.record(FrameMetrics.Phase.LOGIC, phaseStart);
+			
+			// Publicamos el estado del juego para que los pintores lo dibujen.
+			snapshots.publish(engine);
+			phaseStart = metrics.record(FrameMetrics.Phase.PUBLISH, phaseStart);
 			
 			// Mostramos la ventana al usuario.
 			renderGame();
+			metrics.record(FrameMetrics.Phase.RENDER, phaseStart);
+			metrics.record(FrameMetrics.Phase.FRAME, frameStart);
+			metrics.endFrame(loop.getTicks(), frameLimiter.getDroppedFrames());
 			
-			/*
-			* Dormir para limitar la velocidad de fotogramas.
-			*/
-			long delta = (System.nanoTime() - start) / 1000000L;
-			if(delta < FRAME_TIME) {
-				try {
-					Thread.sleep(FRAME_TIME - delta);
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
+			if(frameEvent != null && frameEvent.shouldCommit()) {
+				frameEvent.ticks = (int)(loop.getTicks() - ticks);
+				frameEvent.pieceLocked = engine.getPieces() != pieces;
+				frameEvent.commit();
 			}
 			
-
+			/*
+			* Esperamos al siguiente fotograma para limitar la velocidad de fotogramas.
+			*/
+			frameLimiter.waitForNextFrame();
 		}
 	}
 	
@@ -337,274 +292,294 @@ public class Tetris extends JFrame {
     }
 
 	/**
-	 * Actualiza el juego y maneja la mayor parte de su lógica.
+	 * Aplica las teclas que se han pulsado o soltado desde el último fotograma, en el orden
+	 * en que se recibieron, y registra cuánto ha tardado cada una en aplicarse. Después mueve
+	 * la pieza si se mantiene pulsada una tecla de movimiento.
 	 */
-	private void updateGame() {
-		/*
-		* Comprueba si la posición de la pieza puede moverse hacia abajo a la siguiente fila.
-		*/
-		if (board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
-			// Incrementa la fila actual si es seguro hacerlo.
-			currentRow++;
-		} else {
+	private void processInput() {
+		while(inputs.poll()) {
+			int keyCode = inputs.getKeyCode();
+			if(inputs.isPressed()) {
+				/*
+				 * Ignoramos la repetición automática del sistema operativo, que envía pulsaciones
+				 * mientras la tecla siga pulsada. La repetición de los movimientos la hacemos nosotros.
+				 */
+				if(heldKeys.get(keyCode)) {
+					continue;
+				}
+				heldKeys.set(keyCode);
+				keyPressed(keyCode, inputs.getTime());
+			} else {
+				heldKeys.clear(keyCode);
+				keyReleased(keyCode, inputs.getTime());
+			}
+			inputLatency.record(System.nanoTime() - inputs.getTime());
+		}
+		
+		autoShift(System.nanoTime());
+	}
+	
+	/**
+	 * Aplica la pulsación de una tecla.
+	 * @param keyCode El código de la tecla.
+	 * @param time El instante en que se pulsó, de {@code System.nanoTime()}.
+	 */
+	private void keyPressed(int keyCode, long time) {
+		switch(keyCode) {
+			
 			/*
-			* Hemos llegado al fondo del tablero o aterrizado sobre otra pieza, por lo que
-			* necesitamos agregar la pieza al tablero.
-			*/
-			board.addPiece(currentType, currentCol, currentRow, currentRotation);
-
+			 * Soltar - Cuando se presiona, el bucle de juego activa la caída rápida (25 ciclos por
+			 * segundo) mientras no esté pausado ni haya un tiempo de espera para soltar, y la
+			 * mantiene hasta que se suelte la tecla.
+			 */
+			case KeyEvent.VK_S:
+				loop.setSoftDrop(true);
+				break;
+				
+			
 			/*
-			* Comprueba si al agregar la nueva pieza se han eliminado líneas completas. En caso afirmativo,
-			* incrementa la puntuación del jugador. (Se pueden eliminar hasta 4 líneas de una sola vez;
-			* [1 = 100 puntos, 2 = 200 puntos, 3 = 400 puntos, 4 = 800 puntos]).
-			*/
-			int cleared = board.checkLines();
-			if (cleared > 0) {
-				score += 50 << cleared;
-			}
-
+			 * Mover a la izquierda - Cuando se presiona, verificamos que el juego no esté pausado
+			 * y que la posición a la izquierda de la posición actual sea válida. Si es así, decrementamos
+			 * la columna actual en 1. Si se mantiene pulsada, la pieza se seguirá moviendo (ver autoShift).
+			 */
+			case KeyEvent.VK_A:
+				engine.applyInput(GameEngine.Input.LEFT);
+				shiftDirection = -1;
+				nextShift = time + dasNanos;
+				break;
+				
 			/*
-			* Aumenta ligeramente la velocidad para la siguiente pieza y actualiza el temporizador del juego
-			* para reflejar el aumento.
-			*/
-			gameSpeed += 0.035f;
-			logicTimer.setCyclesPerSecond(gameSpeed);
-			logicTimer.reset();
-
+			 * Mover a la derecha - Cuando se presiona, verificamos que el juego no esté pausado
+			 * y que la posición a la derecha de la posición actual sea válida. Si es así, incrementamos
+			 * la columna actual en 1. Si se mantiene pulsada, la pieza se seguirá moviendo (ver autoShift).
+			 */
+			case KeyEvent.VK_D:
+				engine.applyInput(GameEngine.Input.RIGHT);
+				shiftDirection = 1;
+				nextShift = time + dasNanos;
+				break;
+				
 			/*
-			* Establece el tiempo de espera para que la siguiente pieza no aparezca automáticamente
-			* inmediatamente después de que esta pieza toque el fondo, si aún no hemos reaccionado.
-			* (aproximadamente 0.5 segundos de margen).
-			*/
-			dropCooldown = 25;
-
+			 * Rotar en sentido contrario a las agujas del reloj - Cuando se presiona, verificamos que el juego no esté pausado
+			 * y luego intentamos rotar la pieza en sentido contrario a las agujas del reloj. Debido al tamaño y
+			 * complejidad del código de rotación, así como a su similitud con la rotación en el sentido de las agujas del reloj,
+			 * el código para la rotación de la pieza se maneja en otro método.
+			 */
+			case KeyEvent.VK_Q:
+				engine.applyInput(GameEngine.Input.ROTATE_CCW);
+				break;
+			
 			/*
-			* Actualiza el nivel de dificultad. Esto no tiene ningún efecto en el juego y solo se
-			* utiliza en la cadena "Nivel" en el SidePanel.
-			*/
-			level = (int) (gameSpeed * 1.70f);
-
+			 * Rotar en el sentido de las agujas del reloj - Cuando se presiona, verificamos que el juego no esté pausado
+			 * y luego intentamos rotar la pieza en el sentido de las agujas del reloj. Debido al tamaño y
+			 * complejidad del código de rotación, así como a su similitud con la rotación en sentido contrario a las agujas del reloj,
+			 * el código para la rotación de la pieza se maneja en otro método.
+			 */
+			case KeyEvent.VK_E:
+				engine.applyInput(GameEngine.Input.ROTATE_CW);
+				break;
+				
+			/*
+			 * Caida instantanea - Cuando se presiona, la pieza cae directamente hasta donde se
+			 * muestra la pieza fantasma y se fija en el tablero sin esperar al temporizador.
+			 */
+			case KeyEvent.VK_W:
+				if(loop.applyInput(GameEngine.Input.HARD_DROP)) {
+					pieceLocked();
+				}
+				break;
+				
 			/*
-			* Genera una nueva pieza para controlar.
+			 * Pausar el juego - Cuando se presiona, verificamos que estemos jugando actualmente.
+			 * Si es así, cambiamos el estado de pausa (isPaused) y actualizamos el temporizador lógico
+			 * para reflejar este cambio. De lo contrario, el juego ejecutará una gran cantidad de actualizaciones y esencialmente
+			 * causará un "game over" instantáneo al reanudar el juego si permanecemos en pausa durante más de
+			 * un minuto aproximadamente.
 			*/
-			spawnPiece();
+			case KeyEvent.VK_P:
+				if(!engine.isGameOver() && !engine.isNewGame()) {
+					loop.setPaused(!engine.isPaused());
+				}
+				break;
+			
+			/*
+			 * Iniciar el juego - Cuando se presiona, verificamos si estamos en el estado de "game over" o "new game".
+			 * Si es así, reiniciamos el juego.
+			 */
+			case KeyEvent.VK_ENTER:
+				if(engine.isGameOver() || engine.isNewGame()) {
+					resetGame();
+				}
+				break;
 		}
 	}
-
-	/**
-	 * Fuerza al BoardPanel y al SidePanel a repintarse.
-	 */
-	private void renderGame() {
-		board.repaint();
-		side.repaint();
-	}
-
+	
 	/**
-	 * Restablece las variables del juego a sus valores predeterminados al inicio de un nuevo juego.
+	 * Aplica el soltado de una tecla.
+	 * @param keyCode El código de la tecla.
+	 * @param time El instante en que se soltó, de {@code System.nanoTime()}.
 	 */
-	private void resetGame() {
-		this.level = 1;
-		this.score = 0;
-		this.gameSpeed = 1.0f;
-		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
-		this.isNewGame = false;
-		this.isGameOver = false;
-		board.clear();
-		logicTimer.reset();
-		logicTimer.setCyclesPerSecond(gameSpeed);
-		spawnPiece();
-	}
+	private void keyReleased(int keyCode, long time) {
+		switch(keyCode) {
 		
-	/**
-	 * Genera una nueva pieza y restablece las variables de la pieza a sus valores predeterminados.
-	 */
-	private void spawnPiece() {
 		/*
-		* Extrae la última pieza y restablece nuestra posición y rotación a sus variables predeterminadas,
-		* luego elige la siguiente pieza a utilizar.
-		*/
-		this.currentType = nextType;
-		this.currentCol = currentType.getSpawnColumn();
-		this.currentRow = currentType.getSpawnRow();
-		this.currentRotation = 0;
-		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
-		
+		 * Soltar - Cuando se suelta, establecemos la velocidad del temporizador lógico
+		 * a la velocidad actual del juego y eliminamos cualquier ciclo que aún esté transcurriendo.
+		 */
+		case KeyEvent.VK_S:
+			loop.setSoftDrop(false);
+			break;
+			
 		/*
-		* Si el punto de generación es inválido, debemos pausar el juego y marcar que hemos perdido,
-		* porque significa que las piezas en el tablero se han acumulado demasiado alto.
-		*/
-		if (!board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
-			String nombre = JOptionPane.showInputDialog("Fin del juego \n Por favor, introduce tu nombre aquí:");
-    
-                        // Crear un objeto Jugador con el nombre y la puntuación del jugador
-                        Jugador jugador = new Jugador(nombre, score);
-                        Leaderboard leaderboard = new Leaderboard();
-
-                        // Agregar el jugador a la tabla de líderes
-                        leaderboard.agregarJugador(jugador);
-
-                        enviarScore(jugador);
-
-                        // Mostrar la tabla de líderes
-                        leaderboard.mostrarTabla();
-
-			this.isGameOver = true;
-			logicTimer.setPaused(true);
-		}       
+		 * Mover a la izquierda o a la derecha - Cuando se suelta, la pieza deja de moverse en esa
+		 * dirección. Si la tecla de la dirección contraria sigue pulsada, la pieza empieza a moverse
+		 * hacia ese lado tras el retardo inicial.
+		 */
+		case KeyEvent.VK_A:
+			if(shiftDirection < 0) {
+				shiftDirection = heldKeys.get(KeyEvent.VK_D) ? 1 : 0;
+				nextShift = time + dasNanos;
+			}
+			break;
+			
+		case KeyEvent.VK_D:
+			if(shiftDirection > 0) {
+				shiftDirection = heldKeys.get(KeyEvent.VK_A) ? -1 : 0;
+				nextShift = time + dasNanos;
+			}
+			break;
+		}
 	}
-
-	private void enviarScore(Jugador jugador) {
-        System.out.printf("Enviando puntuación al servidor...%n");
-       Multijugador multijugador = new Multijugador();
-        TetrisClient client = new TetrisClient();
-        try {
-            String serverIP = multijugador.getIp(); // IP del servidor
-            int serverPort = multijugador.getPort(); // Puerto del servidor
-            client.startConnection(serverIP, serverPort);
-
-            // Enviar nombre y puntuación al servidor
-            client.sendScore(jugador.getNombre(), jugador.getScore());
-            System.out.printf("Puntuación enviada al servidor.%n");
-
-            // Cerrar la conexión con el servidor
-            client.stopConnection();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-    }
-
+	
 	/**
-	 * Intenta establecer la rotación de la pieza actual a newRotation.
-	 * @param newRotation La rotación de la nueva pieza.
+	 * Mueve la pieza mientras se mantiene pulsada una tecla de movimiento: primero espera
+	 * el retardo inicial (DAS) y luego la mueve una columna cada intervalo de repetición (ARR).
+	 * Si la pieza choca con algo, o el bucle se ha retrasado mucho, las repeticiones
+	 * pendientes se descartan.
+	 * @param now El instante actual, de {@code System.nanoTime()}.
 	 */
-	private void rotatePiece(int newRotation) {
-		/*
-		* A veces las piezas tendrán que moverse al rotar para evitar salir del tablero
-		* (la pieza I es un buen ejemplo de esto). Aquí almacenamos una fila y columna temporal en caso
-		* de que también necesitemos mover la ficha.
-		*/
-		int newColumn = currentCol;
-		int newRow = currentRow;
-		
-		/*
-		* Obtiene los desplazamientos para cada uno de los lados. Se utilizan para determinar cuántas filas
-		* o columnas vacías hay en cada lado.
-		*/
-		int left = currentType.getLeftInset(newRotation);
-		int right = currentType.getRightInset(newRotation);
-		int top = currentType.getTopInset(newRotation);
-		int bottom = currentType.getBottomInset(newRotation);
-		
-		/*
-		* Si la pieza actual está demasiado a la izquierda o a la derecha, mueve la pieza lejos de los bordes
-		* para evitar que la pieza se salga del mapa y se vuelva automáticamente inválida.
-		*/
-		if (currentCol < -left) {
-			newColumn -= currentCol - left;
-		} else if (currentCol + currentType.getDimension() - right >= BoardPanel.COL_COUNT) {
-			newColumn -= (currentCol + currentType.getDimension() - right) - BoardPanel.COL_COUNT + 1;
+	private void autoShift(long now) {
+		if(shiftDirection == 0) {
+			return;
 		}
 		
-		/*
-		* Si la pieza actual está demasiado arriba o abajo, mueve la pieza lejos de los bordes
-		* para evitar que la pieza se salga del mapa y se vuelva automáticamente inválida.
-		*/
-		if (currentRow < -top) {
-			newRow -= currentRow - top;
-		} else if (currentRow + currentType.getDimension() - bottom >= BoardPanel.ROW_COUNT) {
-			newRow -= (currentRow + currentType.getDimension() - bottom) - BoardPanel.ROW_COUNT + 1;
+		GameEngine.Input input = (shiftDirection < 0) ? GameEngine.Input.LEFT : GameEngine.Input.RIGHT;
+		for(int i = 0; i < Board.COL_COUNT && now - nextShift >= 0; i++) {
+			if(!engine.applyInput(input)) {
+				break;
+			}
+			nextShift += arrNanos;
 		}
-		
-		/*
-		* Comprueba si la nueva posición es aceptable. Si lo es, actualiza la rotación y
-		* posición de la pieza.
-		*/
-		if (board.isValidAndEmpty(currentType, newColumn, newRow, newRotation)) {
-			currentRotation = newRotation;
-			currentRow = newRow;
-			currentCol = newColumn;
+		if(now - nextShift >= 0) {
+			nextShift = now + arrNanos;
 		}
 	}
 	
 	/**
-	 * Comprueba si el juego está pausado o no.
-	 * @return Verdadero si el juego está pausado, falso de lo contrario.
+	 * Se llama después de que una pieza se fija en el tablero. Comprueba si la partida ha terminado.
 	 */
-	public boolean isPaused() {
-		return isPaused;
+	private void pieceLocked() {
+		if (engine.isGameOver()) {
+			endGame();
+		}
 	}
 
 	/**
-	 * Comprueba si el juego ha terminado o no.
-	 * @return Verdadero si el juego ha terminado, falso de lo contrario.
+	 * Pide al BoardPanel y al SidePanel que repinten lo que haya cambiado desde el
+	 * último fotograma. Si no ha cambiado nada, no se repinta nada. En el modo de
+	 * renderizado activo no hay nada que hacer, porque el renderizador dibuja por su cuenta.
+	 * 
+	 * No se avisa al EDT de nada más: cada pase de pintado de Swing adquiere la copia
+	 * más reciente una sola vez, al pintar el primer panel, y los dos paneles la
+	 * comparten. Así, mientras no cambia nada, el EDT no se despierta.
 	 */
-	public boolean isGameOver() {
-		return isGameOver;
+	private void renderGame() {
+		if(renderer == null) {
+			board.repaintChanges();
+			side.repaintChanges();
+		}
 	}
 
 	/**
-	 * Comprueba si es un nuevo juego o no.
-	 * @return Verdadero si es un nuevo juego, falso de lo contrario.
+	 * Restablece las variables del juego a sus valores predeterminados al inicio de un nuevo juego.
 	 */
-	public boolean isNewGame() {
-		return isNewGame;
+	private void resetGame() {
+		loop.reset();
 	}
-
+		
 	/**
-	 * Obtiene la puntuación actual.
-	 * @return La puntuación.
+	 * Termina la partida: pide el nombre del jugador, lo agrega a la tabla de líderes,
+	 * envía la puntuación al servidor y pausa el temporizador.
 	 */
-	public int getScore() {
-		return score;
-	}
+	private void endGame() {
+		String nombre = JOptionPane.showInputDialog("Fin del juego \n Por favor, introduce tu nombre aquí:");
 
-	/**
-	 * Obtiene el nivel actual.
-	 * @return El nivel.
-	 */
-	public int getLevel() {
-		return level;
-	}
+		/*
+		 * Si el jugador cancela el diálogo no hay nombre, y la puntuación no se guarda.
+		 */
+		if(nombre != null) {
+			// Crear un objeto Jugador con el nombre y la puntuación del jugador
+			Jugador jugador = new Jugador(nombre, engine.getScore());
+
+			// Agregar el jugador a la tabla de líderes
+			leaderboard.agregarJugador(jugador);
+
+			enviarScore(jugador);
+		}
+
+		// Mostrar la tabla de líderes
+		leaderboard.mostrarTabla();
 
+		loop.setPaused(true);
+	}
+	
 	/**
-	 * Obtiene el tipo de pieza actual que se está utilizando.
-	 * @return El tipo de pieza.
+	 * Obtiene el histograma del tiempo que tarda cada tecla en aplicarse desde que se
+	 * recibe. Puede consultarse desde cualquier hilo mientras el juego está en marcha.
+	 * @return El histograma, en nanosegundos.
 	 */
-	public TileType getPieceType() {
-		return currentType;
+	public LatencyHistogram getInputLatency() {
+		return inputLatency;
 	}
-
+	
 	/**
-	 * Obtiene el siguiente tipo de pieza que se utilizará.
-	 * @return La siguiente pieza.
+	 * Obtiene las métricas de rendimiento de cada fotograma. Pueden consultarse desde
+	 * cualquier hilo mientras el juego está en marcha.
+	 * @return Las métricas.
 	 */
-	public TileType getNextPieceType() {
-		return nextType;
+	public FrameMetrics getMetrics() {
+		return metrics;
 	}
-
+	
 	/**
-	 * Obtiene la columna de la pieza actual.
-	 * @return La columna.
+	 * Obtiene el limitador de fotogramas del bucle de juego, con las estadísticas de
+	 * cuánto se retrasa cada fotograma y cuántos se han perdido.
+	 * @return El limitador de fotogramas.
 	 */
-	public int getPieceCol() {
-		return currentCol;
+	public FrameLimiter getFrameLimiter() {
+		return frameLimiter;
 	}
-
+	
 	/**
-	 * Obtiene la fila de la pieza actual.
-	 * @return La fila.
+	 * Obtiene el encargado de enviar las puntuaciones al servidor, con el tamaño de su
+	 * cola y la latencia de los envíos.
+	 * @return El encargado de los envíos.
 	 */
-	public int getPieceRow() {
-		return currentRow;
+	public ScoreSender getScoreSender() {
+		return scoreSender;
 	}
 
 	/**
-	 * Obtiene la rotación de la pieza actual.
-	 * @return La rotación.
+	 * Deja la puntuación en la cola del {@link ScoreSender}, que la envía al servidor
+	 * desde su propio hilo. No espera a la red.
+	 * @param jugador El jugador y su puntuación.
 	 */
-	public int getPieceRotation() {
-		return currentRotation;
+	private void enviarScore(Jugador jugador) {
+		if(scoreSender.submit(jugador)) {
+			System.out.printf("Puntuación en cola para enviar al servidor.%n");
+		} else {
+			System.out.printf("La cola de envío está llena: no se enviará la puntuación.%n");
+		}
 	}
 
 	/**
@@ -621,7 +596,7 @@ public class Tetris extends JFrame {
 	
 		serverThread.start();
 	
-		Tetris tetris = new Tetris();
+		Tetris tetris = new Tetris(multijugador);
 		tetris.startGame();
 	}
 	
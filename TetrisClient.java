@@ -1,31 +1,206 @@
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 
 public class TetrisClient {
+    // Cuánto se espera a conectar, y a la respuesta al saludo binario antes de volver
+    // al protocolo de texto
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int HANDSHAKE_TIMEOUT = 2000;
+
     private Socket clientSocket;
     private PrintWriter out;
     private BufferedReader in;
 
+    // Protocolo binario (ScoreProtocol): las tramas se acumulan en binaryOut y se
+    // envían juntas al llenarse el búfer, con flush() o al cerrar
+    private OutputStream binaryOut;
+    private InputStream binaryIn;
+    private ScoreProtocol.FrameDecoder decoder;
+    private ByteBuffer readBuffer;
+    private final byte[] frame = new byte[ScoreProtocol.MAX_ENCODED_LENGTH];
+    private int version;
+    private int sent;
+    private int acknowledged;
+
+    // Con -Dtetris.protocol=text se usa siempre el protocolo de texto; si no, se
+    // intenta el binario y, si el servidor no lo entiende, se vuelve a conectar con texto
     public void startConnection(String ip, int port) throws IOException {
-        clientSocket = new Socket(ip, port);
+        if (!"text".equals(System.getProperty("tetris.protocol"))) {
+            clientSocket = connect(ip, port);
+            clientSocket.setTcpNoDelay(true);
+            if (negotiateBinary()) {
+                return;
+            }
+            clientSocket.close();
+        }
+
+        clientSocket = connect(ip, port);
         out = new PrintWriter(clientSocket.getOutputStream(), true);
         in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
     }
 
+    private static Socket connect(String ip, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            // Como new Socket(ip, port): null es la máquina local
+            socket.connect(new InetSocketAddress(InetAddress.getByName(ip), port), CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    private boolean negotiateBinary() throws IOException {
+        binaryOut = new BufferedOutputStream(clientSocket.getOutputStream());
+        binaryIn = clientSocket.getInputStream();
+        decoder = new ScoreProtocol.FrameDecoder();
+        readBuffer = ByteBuffer.allocate(256);
+        readBuffer.limit(0);
+
+        binaryOut.write(frame, 0, ScoreProtocol.encodeHandshake(frame, 0, ScoreProtocol.VERSION));
+        binaryOut.flush();
+        clientSocket.setSoTimeout(HANDSHAKE_TIMEOUT);
+        try {
+            ScoreProtocol.readHandshake(binaryIn, readBuffer, decoder);
+            version = decoder.getPeerVersion();
+            if (version > ScoreProtocol.VERSION) {
+                throw new ProtocolException("Versión no soportada: " + version);
+            }
+            clientSocket.setSoTimeout(0);
+            return true;
+        } catch (SocketTimeoutException | EOFException | ProtocolException e) {
+            // Un servidor antiguo no responde al saludo (o responde otra cosa)
+            binaryOut = null;
+            version = 0;
+            return false;
+        }
+    }
+
+    // Versión del protocolo binario acordada con el servidor, o 0 si se usa el de texto
+    public int getProtocolVersion() {
+        return version;
+    }
+
     public void sendScore(String nombre, int score) throws IOException {
+        if (binaryOut != null) {
+            binaryOut.write(frame, 0, ScoreProtocol.encodeSubmit(frame, 0, nombre, score));
+            sent++;
+            return;
+        }
         out.println(nombre);
         out.println(score);
     }
 
+    // Envía ya las puntuaciones que estén esperando en el búfer
+    public void flush() throws IOException {
+        if (binaryOut != null) {
+            binaryOut.flush();
+        }
+    }
+
+    // Envía lo que haya en el búfer y espera como mucho timeoutMillis a que el servidor
+    // confirme todas las puntuaciones enviadas. Con la versión 1 o el protocolo de texto
+    // el servidor solo confirma al terminar, así que se termina la conexión (isClosed())
+    // y para enviar más hay que abrir otra
+    public void awaitAcknowledged(int timeoutMillis) throws IOException {
+        clientSocket.setSoTimeout(timeoutMillis);
+        if (version < 2) {
+            stopConnection();
+            if (binaryOut != null && acknowledged < sent) {
+                throw new ProtocolException("El servidor solo confirmó " + acknowledged + " de " + sent + " puntuaciones");
+            }
+            return;
+        }
+        binaryOut.flush();
+        try {
+            while (acknowledged < sent) {
+                if (!readAck()) {
+                    throw new EOFException("El servidor cerró la conexión sin confirmar");
+                }
+            }
+        } finally {
+            clientSocket.setSoTimeout(0);
+        }
+    }
+
+    // Avisa al servidor de que no hay más puntuaciones y espera su confirmación
     public void stopConnection() throws IOException {
-        in.close();
-        out.close();
+        try {
+            if (binaryOut != null) {
+                binaryOut.write(frame, 0, ScoreProtocol.encodeEnd(frame, 0));
+                binaryOut.flush();
+                // El último ACK, después de los que aún no se hayan leído, llega antes del cierre
+                boolean isAcknowledged = false;
+                while (readAck()) {
+                    isAcknowledged = true;
+                }
+                if (!isAcknowledged) {
+                    throw new EOFException("El servidor cerró la conexión sin confirmar");
+                }
+            } else {
+                // PrintWriter no lanza excepciones: si la conexión se cortó, lo sabremos
+                // porque no llega la respuesta
+                out.println(".");
+                if (in.readLine() == null) {
+                    throw new EOFException("El servidor cerró la conexión sin confirmar");
+                }
+            }
+        } finally {
+            clientSocket.close();
+        }
+    }
+
+    // Cierra sin avisar al servidor ni esperar su confirmación
+    public void close() throws IOException {
         clientSocket.close();
     }
 
+    // Si la conexión ya se ha cerrado o terminado
+    public boolean isClosed() {
+        return clientSocket.isClosed();
+    }
+
+    // Lee un ACK o un ERROR del servidor. Devuelve false si el servidor ha cerrado
+    private boolean readAck() throws IOException {
+        if (!ScoreProtocol.readFrame(binaryIn, readBuffer, decoder)) {
+            return false;
+        }
+        int type = decoder.getType();
+        if (type == ScoreProtocol.ACK) {
+            acknowledged = decoder.readVarint();
+        } else if (type == ScoreProtocol.ERROR) {
+            int code = decoder.readVarint();
+            throw new ProtocolException("Error " + code + " del servidor: " + decoder.readString());
+        } else {
+            throw new ProtocolException("Tipo de trama desconocido: " + type);
+        }
+        return true;
+    }
+
+    // Puntuaciones enviadas en la conexión (solo con el protocolo binario)
+    public int getSent() {
+        return sent;
+    }
+
+    // Puntuaciones que el servidor ha confirmado: al cerrar, o también por el camino con
+    // la versión 2 (solo con el protocolo binario)
+    public int getAcknowledged() {
+        return acknowledged;
+    }
+
     public static void main(String[] args) {
         TetrisClient client = new TetrisClient();
         try {
@@ -45,4 +220,3 @@ public class TetrisClient {
         }
     }
 }
-
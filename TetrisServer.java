@@ -1,54 +1,321 @@
 import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.PushbackInputStream;
+import java.net.ProtocolException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TetrisServer {
+    // Máximo de puntuaciones que se agregan a la tabla de una vez
+    static final int BATCH_SIZE = 512;
+
     private ServerSocket serverSocket;
+    private NioTetrisServer nioServer;
+    private final ExecutorService executor;
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    // El modo se elige con -Dtetris.server: "threads" (por defecto), "virtual" o "nio"
+    public TetrisServer() {
+        this(createExecutor(System.getProperty("tetris.server", "threads")));
+    }
+
+    // Ejecuta cada conexión en el executor indicado
+    public TetrisServer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // "virtual" usa un hilo virtual por conexión si la JVM los tiene (Java 21+);
+    // si no, o con cualquier otro modo, un hilo de plataforma por conexión
+    static ExecutorService createExecutor(String mode) {
+        if ("virtual".equals(mode)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Hilos virtuales no disponibles en esta JVM, se usan hilos de plataforma");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
 
     public void start(int port) throws IOException {
+        // Con -Dtetris.server=nio, unos pocos hilos con Selector atienden todas las conexiones
+        if ("nio".equals(System.getProperty("tetris.server"))) {
+            int loops = Integer.getInteger("tetris.server.loops",
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+            nioServer = new NioTetrisServer(loops, metrics);
+            nioServer.bind(port);
+            abrirTabla();
+            nioServer.run();
+            return;
+        }
+
         serverSocket = new ServerSocket(port);
-        while (true) new EchoClientHandler(serverSocket.accept()).start();
+        abrirTabla();
+        while (true) {
+            // Evento JFR con el tiempo de espera hasta que se conecta un cliente
+            GameEvents.ServerAccept event = GameEvents.beginServerAccept();
+            Socket socket = serverSocket.accept();
+            if (event != null && event.shouldCommit()) {
+                event.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+                event.commit();
+            }
+            executor.execute(new EchoClientHandler(socket));
+        }
+    }
+
+    // La tabla se guarda en el directorio de -Dtetris.data ("datos" por defecto). Solo
+    // se abre con el puerto ya abierto: si el puerto lo tiene otra partida, esa es la
+    // que guarda la tabla. Si no se puede abrir, se cierra el puerto
+    private void abrirTabla() throws IOException {
+        try {
+            Leaderboard.abrir(Paths.get(System.getProperty("tetris.data", "datos")));
+        } catch (IOException | RuntimeException e) {
+            if (nioServer != null) {
+                nioServer.stop();
+            } else {
+                serverSocket.close();
+            }
+            throw e;
+        }
     }
 
     public void stop() throws IOException {
-        serverSocket.close();
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            serverSocket.close();
+        }
+        executor.shutdown();
+        Leaderboard.cerrar();
     }
 
-    private static class EchoClientHandler extends Thread {
+    private class EchoClientHandler implements Runnable {
         private Socket clientSocket;
         private PrintWriter out;
         private BufferedReader in;
+        private CountingInputStream counter;
+        private long lastCount;
+
+        // Las puntuaciones recibidas que aún no se han agregado a la tabla
+        private final List<Jugador> batch = new ArrayList<>();
+        private int accepted;
+        private int acknowledged;
 
         public EchoClientHandler(Socket socket) {
             this.clientSocket = socket;
         }
 
         public void run() {
-            try {
-                out = new PrintWriter(clientSocket.getOutputStream(), true);
+            metrics.connectionOpened();
+            try (Socket socket = clientSocket) {
+                counter = new CountingInputStream(socket.getInputStream());
+
+                // Los clientes binarios empiezan con un byte 0, que no puede empezar una línea
+                PushbackInputStream input = new PushbackInputStream(counter);
+                int first = input.read();
+                if (first >= 0) {
+                    input.unread(first);
+                }
+                if (first == 0) {
+                    runBinary(input, socket.getOutputStream());
+                    return;
+                }
+
+                out = new PrintWriter(socket.getOutputStream(), true);
                 in = new BufferedReader(
-                        new InputStreamReader(clientSocket.getInputStream()));
+                        new InputStreamReader(input));
                 String inputLine;
+                GameEvents.ServerRead event = GameEvents.beginServerRead();
                 while ((inputLine = in.readLine()) != null) {
                     if (".".equals(inputLine)) {
+                        commitRead(event);
+                        applyBatch();
                         out.println("Recibido");
                         break;
                     }
 
-                    Leaderboard.agregarJugador(new Jugador(inputLine,
-                            Integer.parseInt(in.readLine())));
+                    String score = in.readLine();
+                    commitRead(event);
+                    try {
+                        batch.add(new Jugador(inputLine, Integer.parseInt(score)));
+                    } catch (NumberFormatException e) {
+                        // Una puntuación que no es un número se descarta, pero la conexión sigue
+                        metrics.error();
+                        System.err.println("Puntuación inválida de " + socket.getRemoteSocketAddress() + ": " + score);
+                    }
+                    // Agregamos el lote cuando ya no quedan líneas recibidas por leer
+                    if (batch.size() >= BATCH_SIZE || !in.ready()) {
+                        applyBatch();
+                    }
+
+                    event = GameEvents.beginServerRead();
                 }
 
+                applyBatch();
                 out.println("Recibido");
-                in.close();
-                out.close();
-                clientSocket.close();
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                // El cliente se desconectó o falló la red: solo se pierde esta conexión
+                metrics.error();
+                System.err.println("Conexión con " + clientSocket.getRemoteSocketAddress() + " cerrada: " + e);
+            } finally {
+                // Lo que llegó antes de un error también se agrega
+                try {
+                    applyBatch();
+                } catch (IOException e) {
+                    metrics.error();
+                    System.err.println("No se pudieron guardar las puntuaciones de " + clientSocket.getRemoteSocketAddress() + ": " + e);
+                }
+                if (counter != null) {
+                    metrics.bytesRead(counter.getCount() - lastCount);
+                }
+                metrics.connectionClosed();
+            }
+        }
+
+        // El protocolo binario de ScoreProtocol: saludo, tramas SUBMIT hasta END (o hasta
+        // que el cliente cierra) y un ACK con las puntuaciones agregadas. Con la versión 2,
+        // también un ACK cada vez que se agrega un lote
+        private void runBinary(InputStream input, OutputStream output) throws IOException {
+            ScoreProtocol.FrameDecoder decoder = new ScoreProtocol.FrameDecoder();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            buffer.limit(0);
+            byte[] reply = new byte[ScoreProtocol.MAX_ENCODED_LENGTH];
+            int version = 0;
+
+            try {
+                ScoreProtocol.readHandshake(input, buffer, decoder);
+                version = Math.min(decoder.getPeerVersion(), ScoreProtocol.VERSION);
+                output.write(reply, 0, ScoreProtocol.encodeHandshake(reply, 0, version));
+
+                GameEvents.ServerRead event = GameEvents.beginServerRead();
+                while (true) {
+                    if (!decoder.decode(buffer)) {
+                        // Antes de esperar más datos, agregamos y confirmamos lo recibido
+                        acknowledge(output, reply, version);
+                        if (!ScoreProtocol.fill(input, buffer)) {
+                            if (!decoder.isIdle()) {
+                                throw new EOFException("Conexión cerrada a mitad de una trama");
+                            }
+                            break;
+                        }
+                        continue;
+                    }
+
+                    int type = decoder.getType();
+                    if (type == ScoreProtocol.END) {
+                        break;
+                    }
+                    if (type != ScoreProtocol.SUBMIT) {
+                        throw new ProtocolException("Tipo de trama desconocido: " + type);
+                    }
+
+                    int score = decoder.readVarint();
+                    batch.add(new Jugador(decoder.readString(), score));
+                    if (batch.size() >= BATCH_SIZE) {
+                        applyBatch();
+                    }
+
+                    // Los bytes que quedan en el búfer son de las tramas siguientes
+                    commitRead(event, buffer.remaining());
+                    event = GameEvents.beginServerRead();
+                }
+            } catch (ProtocolException e) {
+                // Confirmamos lo que sí era válido y avisamos al cliente antes de cerrar
+                acknowledge(output, reply, version);
+                output.write(reply, 0, ScoreProtocol.encodeError(reply, 0, ScoreProtocol.ERROR_MALFORMED, e.getMessage()));
+                throw e;
+            }
+            applyBatch();
+            output.write(reply, 0, ScoreProtocol.encodeAck(reply, 0, accepted));
+        }
+
+        // Agrega el lote y, con la versión 2, envía un ACK si hay algo nuevo que confirmar
+        private void acknowledge(OutputStream output, byte[] reply, int version) throws IOException {
+            applyBatch();
+            if (version >= 2 && accepted > acknowledged) {
+                output.write(reply, 0, ScoreProtocol.encodeAck(reply, 0, accepted));
+                acknowledged = accepted;
+            }
+        }
+
+        // Una sola actualización de la tabla por lote. Si no se puede guardar, el lote no
+        // se confirma
+        private void applyBatch() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            int size = batch.size();
+            try {
+                Leaderboard.agregarJugadores(batch);
+            } finally {
+                batch.clear();
+            }
+            metrics.scoresReceived(size);
+            accepted += size;
+        }
+
+        // Registra la lectura de un mensaje con los bytes recibidos desde el anterior
+        private void commitRead(GameEvents.ServerRead event) {
+            commitRead(event, 0);
+        }
+
+        private void commitRead(GameEvents.ServerRead event, long unread) {
+            long count = counter.getCount() - unread;
+            if (event != null && event.shouldCommit()) {
+                event.remoteAddress = String.valueOf(clientSocket.getRemoteSocketAddress());
+                event.bytesRead = count - lastCount;
+                event.commit();
+            }
+            metrics.bytesRead(count - lastCount);
+            lastCount = count;
+        }
+    }
+
+    // Cuenta los bytes leídos del socket (BufferedReader lee por adelantado, así
+    // que cada mensaje se lleva los bytes que llegaron desde el anterior)
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
             }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return count;
         }
     }
 }
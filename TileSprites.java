@@ -0,0 +1,168 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * La clase {@code TileSprites} dibuja una sola vez, a un tamaño dado, la casilla
+ * de cada {@code TileType} (y la de su fantasma), para que pintar una casilla sea
+ * copiar una imagen en vez de una serie de rellenos y líneas. Las imágenes se crean
+ * compatibles con la configuración gráfica de la pantalla en la que se pintan, y se
+ * vuelven a crear si esa configuración cambia.
+ *
+ */
+public class TileSprites {
+
+	/**
+	 * La opacidad de los colores de la pieza fantasma.
+	 */
+	private static final int GHOST_ALPHA = 20;
+
+	/**
+	 * Los píxeles que ocupa una casilla.
+	 */
+	private final int tileSize;
+
+	/**
+	 * El ancho del sombreado de las casillas.
+	 */
+	private final int shadeWidth;
+
+	/**
+	 * La configuración gráfica para la que se crearon las imágenes, o null si aún
+	 * no se han creado.
+	 */
+	private GraphicsConfiguration config;
+
+	/**
+	 * Si ya se han creado las imágenes.
+	 */
+	private boolean isValid;
+
+	/**
+	 * La imagen de la casilla de cada tipo, por ordinal.
+	 */
+	private Image[] tiles;
+
+	/**
+	 * La imagen del fantasma de cada tipo, por ordinal.
+	 */
+	private Image[] ghosts;
+
+	/**
+	 * Crea una nueva caché vacía. Las imágenes se dibujan en la primera llamada
+	 * a {@code validate}.
+	 * @param tileSize El tamaño de una casilla en píxeles.
+	 * @param shadeWidth El ancho del sombreado de las casillas.
+	 */
+	public TileSprites(int tileSize, int shadeWidth) {
+		this.tileSize = tileSize;
+		this.shadeWidth = shadeWidth;
+		this.tiles = new Image[TileType.values().length];
+		this.ghosts = new Image[TileType.values().length];
+	}
+
+	/**
+	 * Se asegura de que las imágenes existen y son compatibles con la configuración
+	 * gráfica en la que se van a pintar, y las vuelve a dibujar si ha cambiado (por
+	 * ejemplo, al llevar la ventana a otra pantalla). Hay que llamarlo al empezar
+	 * cada pintado.
+	 * @param config La configuración gráfica, o null si no se conoce.
+	 */
+	public void validate(GraphicsConfiguration config) {
+		if(isValid && this.config == config) {
+			return;
+		}
+
+		for(TileType type : TileType.values()) {
+			Color base = type.getBaseColor();
+			tiles[type.ordinal()] = render(config, Transparency.OPAQUE, base, type.getLightColor(), type.getDarkColor());
+
+			base = new Color(base.getRed(), base.getGreen(), base.getBlue(), GHOST_ALPHA);
+			ghosts[type.ordinal()] = render(config, Transparency.TRANSLUCENT, base, base.brighter(), base.darker());
+		}
+		this.config = config;
+		this.isValid = true;
+	}
+
+	/**
+	 * Obtiene la imagen de la casilla de un tipo.
+	 * @param type El tipo de casilla.
+	 * @return La imagen.
+	 */
+	public Image getTile(TileType type) {
+		return tiles[type.ordinal()];
+	}
+
+	/**
+	 * Obtiene la imagen del fantasma de un tipo.
+	 * @param type El tipo de casilla.
+	 * @return La imagen.
+	 */
+	public Image getGhost(TileType type) {
+		return ghosts[type.ordinal()];
+	}
+
+	/**
+	 * Dibuja una casilla en una imagen nueva.
+	 * @param config La configuración gráfica para la que se crea la imagen, o null.
+	 * @param transparency La transparencia de la imagen.
+	 * @param base El color base de la casilla.
+	 * @param light El color claro de la casilla.
+	 * @param dark El color oscuro de la casilla.
+	 * @return La imagen.
+	 */
+	private Image render(GraphicsConfiguration config, int transparency, Color base, Color light, Color dark) {
+		BufferedImage image = (config != null) ? config.createCompatibleImage(tileSize, tileSize, transparency)
+				: new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			drawTile(base, light, dark, 0, 0, tileSize, shadeWidth, g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Dibuja una casilla directamente, sin usar una imagen.
+	 * @param base El color base de la casilla.
+	 * @param light El color claro de la casilla.
+	 * @param dark El color oscuro de la casilla.
+	 * @param x La coordenada x de la casilla.
+	 * @param y La coordenada y de la casilla.
+	 * @param size El tamaño de la casilla.
+	 * @param shade El ancho del sombreado.
+	 * @param g El objeto gráfico.
+	 */
+	public static void drawTile(Color base, Color light, Color dark, int x, int y, int size, int shade, Graphics g) {
+
+		/*
+		 * Rellena toda la casilla con el color base.
+		 */
+		g.setColor(base);
+		g.fillRect(x, y, size, size);
+
+		/*
+		 * Rellena los bordes inferior y derecho de la casilla con el color oscuro.
+		 */
+		g.setColor(dark);
+		g.fillRect(x, y + size - shade, size, shade);
+		g.fillRect(x + size - shade, y, shade, size);
+
+		/*
+		 * Rellena los bordes superior e izquierdo con el color claro. Se dibuja una
+		 * línea por cada fila o columna en vez de un rectángulo para que quede una
+		 * diagonal limpia donde se juntan el sombreado claro y el oscuro.
+		 */
+		g.setColor(light);
+		for(int i = 0; i < shade; i++) {
+			g.drawLine(x, y + i, x + size - i - 1, y + i);
+			g.drawLine(x + i, y, x + i, y + size - i - 1);
+		}
+	}
+
+}
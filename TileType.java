@@ -1,4 +1,5 @@
 import java.awt.Color;
+import java.util.Arrays;
 
 /**
  * The {@code PieceType} enum describes the properties of the various pieces that can be used in the game.
@@ -238,6 +239,47 @@ public enum TileType {
 	 */
 	private boolean[][] tiles;
 	
+	/**
+	 * The occupancy bitmask of every row in the piece, for each rotation. Bit
+	 * {@code n} of a mask is set if column {@code n} of that row contains a tile,
+	 * which matches the layout of the board's row bitmasks.
+	 */
+	private int[][] rowMasks;
+	
+	/**
+	 * The coordinates of every tile in the piece, for each rotation. The tiles of
+	 * a rotation are stored as consecutive x, y pairs.
+	 */
+	private int[][] cells;
+	
+	/**
+	 * The lowest row in each column of the piece that contains a tile, for each
+	 * rotation, or -1 if the column is empty.
+	 */
+	private int[][] skirts;
+	
+	/**
+	 * The number of empty columns on the left side of the piece, for each rotation.
+	 */
+	private int[] leftInsets;
+	
+	/**
+	 * The right inset of the piece (the dimension minus the rightmost occupied
+	 * column), for each rotation.
+	 */
+	private int[] rightInsets;
+	
+	/**
+	 * The number of empty rows on the top side of the piece, for each rotation.
+	 */
+	private int[] topInsets;
+	
+	/**
+	 * The bottom inset of the piece (the dimension minus the lowest occupied
+	 * row), for each rotation.
+	 */
+	private int[] bottomInsets;
+	
 	/**
 	 * Creates a new TileType.
 	 * @param color The base color of the tile.
@@ -255,6 +297,46 @@ public enum TileType {
 		this.cols = cols;
 		this.rows = rows;
 		
+		/*
+		 * Build the geometry tables for every rotation up front, so that nothing
+		 * that runs during the game ever has to scan the tiles array. The row
+		 * bitmasks let collision checks test an entire row of the piece with a
+		 * single operation.
+		 */
+		int rotations = tiles.length;
+		this.rowMasks = new int[rotations][dimension];
+		this.cells = new int[rotations][];
+		this.skirts = new int[rotations][dimension];
+		this.leftInsets = new int[rotations];
+		this.rightInsets = new int[rotations];
+		this.topInsets = new int[rotations];
+		this.bottomInsets = new int[rotations];
+		for(int rotation = 0; rotation < rotations; rotation++) {
+			int count = 0;
+			int minX = dimension, maxX = -1, minY = dimension, maxY = -1;
+			int[] cell = new int[dimension * dimension * 2];
+			Arrays.fill(skirts[rotation], -1);
+			for(int y = 0; y < dimension; y++) {
+				for(int x = 0; x < dimension; x++) {
+					if(isTile(x, y, rotation)) {
+						rowMasks[rotation][y] |= (1 << x);
+						skirts[rotation][x] = y;
+						cell[count++] = x;
+						cell[count++] = y;
+						minX = Math.min(minX, x);
+						maxX = Math.max(maxX, x);
+						minY = Math.min(minY, y);
+						maxY = Math.max(maxY, y);
+					}
+				}
+			}
+			cells[rotation] = Arrays.copyOf(cell, count);
+			leftInsets[rotation] = minX;
+			rightInsets[rotation] = dimension - maxX;
+			topInsets[rotation] = minY;
+			bottomInsets[rotation] = dimension - maxY;
+		}
+		
 		this.spawnCol = 5 - (dimension >> 1);
 		this.spawnRow = getTopInset(0);
 	}
@@ -336,6 +418,56 @@ public enum TileType {
 		return tiles[rotation][y * dimension + x];
 	}
 	
+	/**
+	 * Gets the occupancy bitmask of a row within the piece. Bit {@code n} is set
+	 * if column {@code n} of the row contains a tile.
+	 * @param y The row within the piece.
+	 * @param rotation The rotation.
+	 * @return The row bitmask.
+	 */
+	public int getRowMask(int y, int rotation) {
+		return rowMasks[rotation][y];
+	}
+	
+	/**
+	 * Gets the number of tiles that make up this piece.
+	 * @return The number of tiles.
+	 */
+	public int getTileCount() {
+		return cells[0].length >> 1;
+	}
+	
+	/**
+	 * Gets the x coordinate of a tile within the piece.
+	 * @param index The index of the tile, between 0 and {@code getTileCount()}.
+	 * @param rotation The rotation.
+	 * @return The x coordinate of the tile.
+	 */
+	public int getTileX(int index, int rotation) {
+		return cells[rotation][index << 1];
+	}
+	
+	/**
+	 * Gets the y coordinate of a tile within the piece.
+	 * @param index The index of the tile, between 0 and {@code getTileCount()}.
+	 * @param rotation The rotation.
+	 * @return The y coordinate of the tile.
+	 */
+	public int getTileY(int index, int rotation) {
+		return cells[rotation][(index << 1) + 1];
+	}
+	
+	/**
+	 * The skirt of a column is the lowest row in that column of the piece that
+	 * contains a tile.
+	 * @param x The column within the piece.
+	 * @param rotation The rotation.
+	 * @return The skirt, or -1 if the column is empty.
+	 */
+	public int getSkirt(int x, int rotation) {
+		return skirts[rotation][x];
+	}
+	
 	/**
 	 * The left inset is represented by the number of empty columns on the left
 	 * side of the array for the given rotation.
@@ -343,18 +475,7 @@ public enum TileType {
 	 * @return The left inset.
 	 */
 	public int getLeftInset(int rotation) {
-		/*
-		 * Loop through from left to right until we find a tile then return
-		 * the column.
-		 */
-		for(int x = 0; x < dimension; x++) {
-			for(int y = 0; y < dimension; y++) {
-				if(isTile(x, y, rotation)) {
-					return x;
-				}
-			}
-		}
-		return -1;
+		return leftInsets[rotation];
 	}
 	
 	/**
@@ -364,18 +485,7 @@ public enum TileType {
 	 * @return The right inset.
 	 */
 	public int getRightInset(int rotation) {
-		/*
-		 * Loop through from right to left until we find a tile then return
-		 * the column.
-		 */
-		for(int x = dimension - 1; x >= 0; x--) {
-			for(int y = 0; y < dimension; y++) {
-				if(isTile(x, y, rotation)) {
-					return dimension - x;
-				}
-			}
-		}
-		return -1;
+		return rightInsets[rotation];
 	}
 	
 	/**
@@ -385,18 +495,7 @@ public enum TileType {
 	 * @return The top inset.
 	 */
 	public int getTopInset(int rotation) {
-		/*
-		 * Loop through from top to bottom until we find a tile then return
-		 * the row.
-		 */
-		for(int y = 0; y < dimension; y++) {
-			for(int x = 0; x < dimension; x++) {
-				if(isTile(x, y, rotation)) {
-					return y;
-				}
-			}
-		}
-		return -1;
+		return topInsets[rotation];
 	}
 	
 	/**
@@ -406,18 +505,7 @@ public enum TileType {
 	 * @return The bottom inset.
 	 */
 	public int getBottomInset(int rotation) {
-		/*
-		 * Loop through from bottom to top until we find a tile then return
-		 * the row.
-		 */
-		for(int y = dimension - 1; y >= 0; y--) {
-			for(int x = 0; x < dimension; x++) {
-				if(isTile(x, y, rotation)) {
-					return dimension - y;
-				}
-			}
-		}
-		return -1;
+		return bottomInsets[rotation];
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+/**
+ * La interfaz {@code TimeSource} es de donde un {@code Clock} obtiene la hora
+ * actual. Por defecto se usa el reloj real; en su lugar se puede usar un
+ * {@code VirtualClock} para que la lógica del juego vaya más rápido que el tiempo real.
+ *
+ */
+public interface TimeSource {
+
+	/**
+	 * El reloj de alta resolución del ordenador.
+	 */
+	TimeSource SYSTEM = System::nanoTime;
+
+	/**
+	 * Obtiene la hora actual en nanosegundos. Como con {@code System.nanoTime()}, el
+	 * valor solo tiene sentido comparado con otro de la misma fuente.
+	 * @return La hora actual en nanosegundos.
+	 */
+	long nanoTime();
+
+}
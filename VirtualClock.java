@@ -0,0 +1,37 @@
+/**
+ * La clase {@code VirtualClock} es una fuente de tiempo que solo avanza cuando se
+ * le pide. Una partida con un reloj virtual se comporta exactamente igual que en
+ * tiempo real, ciclo a ciclo, pero puede ir tan rápido como permita el ordenador,
+ * lo que la hace útil para simulaciones y pruebas.
+ *
+ * Un reloj virtual no es seguro entre hilos, y solo debe usarlo una partida.
+ *
+ */
+public class VirtualClock implements TimeSource {
+
+	/**
+	 * La hora actual en nanosegundos.
+	 */
+	private long now;
+
+	/**
+	 * Crea un nuevo reloj virtual que empieza en 0.
+	 */
+	public VirtualClock() {
+		this.now = 0L;
+	}
+
+	@Override
+	public long nanoTime() {
+		return now;
+	}
+
+	/**
+	 * Adelanta el reloj.
+	 * @param nanos Los nanosegundos que se adelanta.
+	 */
+	public void advance(long nanos) {
+		this.now += nanos;
+	}
+
+}
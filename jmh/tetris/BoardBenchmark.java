@@ -0,0 +1,77 @@
+package tetris;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide las consultas del tablero que no lo modifican: si una pieza cabe en una
+ * posición, cuánto caería y la copia del tablero entero. Cada llamada usa la
+ * siguiente de {@link BoardFixtures#POSITIONS} posiciones precalculadas, para que
+ * las ramas no se vuelvan predecibles.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Param({BoardFixtures.VACIO, BoardFixtures.MITAD, BoardFixtures.CASI_LLENO, BoardFixtures.BASURA})
+	public String fixture;
+
+	private Board board;
+	private Board scratch;
+	private BoardFixtures.Position[] anywhere;
+	private BoardFixtures.Position[] landing;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		board = BoardFixtures.create(fixture);
+		scratch = new Board();
+		anywhere = BoardFixtures.anywhere(new Random(5L));
+		landing = BoardFixtures.landing(board, new Random(6L));
+	}
+
+	/**
+	 * Avanza a la siguiente posición precalculada.
+	 * @return Su índice.
+	 */
+	private int next() {
+		next = (next + 1) & (BoardFixtures.POSITIONS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public boolean isValidAndEmpty() {
+		BoardFixtures.Position p = anywhere[next()];
+		return board.isValidAndEmpty(p.type, p.x, p.y, p.rotation);
+	}
+
+	@Benchmark
+	public int getDropDistance() {
+		BoardFixtures.Position p = landing[next()];
+		return board.getDropDistance(p.type, p.x, p.type.getSpawnRow(), p.rotation);
+	}
+
+	@Benchmark
+	public Board copyFrom() {
+		scratch.copyFrom(board);
+		return scratch;
+	}
+
+}
@@ -0,0 +1,152 @@
+package tetris;
+
+import java.util.Random;
+
+/**
+ * La clase {@code BoardFixtures} crea los tableros de prueba de los benchmarks
+ * (vacío, a mitad de partida, casi lleno y con mucha basura) y las posiciones de
+ * pieza que recorren. Todo se genera con semillas fijas, así que dos ejecuciones
+ * miden exactamente lo mismo.
+ *
+ */
+final class BoardFixtures {
+
+	/**
+	 * Los nombres de los tableros de prueba, para los {@code @Param} de los benchmarks.
+	 */
+	static final String VACIO = "vacio";
+	static final String MITAD = "mitad";
+	static final String CASI_LLENO = "casi-lleno";
+	static final String BASURA = "basura";
+
+	/**
+	 * El número de posiciones precalculadas que recorre cada benchmark. Es una
+	 * potencia de dos para poder avanzar con una máscara.
+	 */
+	static final int POSITIONS = 1024;
+
+	/**
+	 * Una posición de pieza precalculada.
+	 */
+	static final class Position {
+
+		final TileType type;
+		final int x, y, rotation;
+
+		Position(TileType type, int x, int y, int rotation) {
+			this.type = type;
+			this.x = x;
+			this.y = y;
+			this.rotation = rotation;
+		}
+	}
+
+	private BoardFixtures() {
+	}
+
+	/**
+	 * Crea el tablero de prueba con el nombre indicado.
+	 * @param name Uno de {@link #VACIO}, {@link #MITAD}, {@link #CASI_LLENO} o {@link #BASURA}.
+	 * @return El tablero.
+	 */
+	static Board create(String name) {
+		switch(name) {
+		case VACIO:
+			return new Board();
+		case MITAD:
+			return filled(8, 0.7, 1L);
+		case CASI_LLENO:
+			return filled(18, 0.8, 2L);
+		case BASURA:
+			return garbage(12, 3L);
+		default:
+			throw new IllegalArgumentException("Tablero de prueba desconocido: " + name);
+		}
+	}
+
+	/**
+	 * Crea posiciones al azar en cualquier parte del tablero, válidas o no.
+	 * @param random El generador.
+	 * @return Las posiciones.
+	 */
+	static Position[] anywhere(Random random) {
+		TileType[] types = TileType.values();
+		Position[] positions = new Position[POSITIONS];
+		for(int i = 0; i < POSITIONS; i++) {
+			TileType type = types[random.nextInt(types.length)];
+			int rotation = random.nextInt(4);
+			int x = random.nextInt(Board.COL_COUNT + 2) - 2;
+			int y = random.nextInt(Board.ROW_COUNT + 2) - 2;
+			positions[i] = new Position(type, x, y, rotation);
+		}
+		return positions;
+	}
+
+	/**
+	 * Crea posiciones al azar en las que una pieza soltada desde arriba aterriza.
+	 * @param board El tablero.
+	 * @param random El generador.
+	 * @return Las posiciones.
+	 */
+	static Position[] landing(Board board, Random random) {
+		TileType[] types = TileType.values();
+		Position[] positions = new Position[POSITIONS];
+		for(int i = 0; i < POSITIONS; i++) {
+			TileType type;
+			int rotation, x;
+			do {
+				type = types[random.nextInt(types.length)];
+				rotation = random.nextInt(4);
+				x = random.nextInt(Board.COL_COUNT + 2) - 2;
+			} while(!board.isValidAndEmpty(type, x, type.getSpawnRow(), rotation));
+			int y = type.getSpawnRow() + board.getDropDistance(type, x, type.getSpawnRow(), rotation);
+			positions[i] = new Position(type, x, y, rotation);
+		}
+		return positions;
+	}
+
+	/**
+	 * Crea un tablero cuyas filas inferiores están llenas al azar, sin que
+	 * ninguna fila llegue a estar completa.
+	 * @param height El número de filas a llenar.
+	 * @param density La probabilidad de que cada casilla esté ocupada.
+	 * @param seed La semilla del generador.
+	 * @return El tablero.
+	 */
+	private static Board filled(int height, double density, long seed) {
+		Random random = new Random(seed);
+		Board board = new Board();
+		for(int row = Board.ROW_COUNT - height; row < Board.ROW_COUNT; row++) {
+			int hole = random.nextInt(Board.COL_COUNT);
+			for(int col = 0; col < Board.COL_COUNT; col++) {
+				if(col != hole && random.nextDouble() < density) {
+					board.setTile(col, row, TileType.TypeO);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Crea un tablero con filas de basura: filas completas salvo por un hueco.
+	 * La mitad de los huecos están alineados en la última columna para que las
+	 * piezas que caen ahí eliminen líneas.
+	 * @param height El número de filas de basura.
+	 * @param seed La semilla del generador.
+	 * @return El tablero.
+	 */
+	private static Board garbage(int height, long seed) {
+		Random random = new Random(seed);
+		Board board = new Board();
+		for(int row = Board.ROW_COUNT - height; row < Board.ROW_COUNT; row++) {
+			int hole = random.nextBoolean() ? Board.COL_COUNT - 1 : random.nextInt(Board.COL_COUNT);
+			for(int col = 0; col < Board.COL_COUNT; col++) {
+				if(col != hole) {
+					board.setTile(col, row, TileType.TypeZ);
+				}
+			}
+		}
+		return board;
+	}
+
+}
@@ -0,0 +1,111 @@
+package tetris;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide las operaciones que modifican el tablero: fijar una pieza y eliminar las
+ * líneas que complete. Antes de cada llamada se restaura el tablero de prueba
+ * fuera de la medición, así que el tiempo de la copia no se cuenta.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardMutationBenchmark {
+
+	/**
+	 * Un tablero de trabajo, el tablero de prueba y las posiciones donde aterrizan
+	 * las piezas.
+	 */
+	@State(Scope.Thread)
+	public abstract static class Fixture {
+
+		@Param({BoardFixtures.VACIO, BoardFixtures.MITAD, BoardFixtures.CASI_LLENO, BoardFixtures.BASURA})
+		public String fixture;
+
+		Board board;
+		Board scratch;
+		BoardFixtures.Position[] landing;
+		BoardFixtures.Position position;
+		private int next;
+
+		@Setup(Level.Trial)
+		public void setUpTrial() {
+			board = BoardFixtures.create(fixture);
+			scratch = new Board();
+			landing = BoardFixtures.landing(board, new Random(6L));
+		}
+
+		/**
+		 * Vuelve a copiar el tablero de prueba y pasa a la siguiente posición.
+		 */
+		void restore() {
+			next = (next + 1) & (BoardFixtures.POSITIONS - 1);
+			position = landing[next];
+			scratch.copyFrom(board);
+		}
+	}
+
+	/**
+	 * El tablero de prueba recién copiado.
+	 */
+	@State(Scope.Thread)
+	public static class Copied extends Fixture {
+
+		@Setup(Level.Invocation)
+		public void setUpInvocation() {
+			restore();
+		}
+	}
+
+	/**
+	 * El tablero de prueba con la pieza ya fijada, para medir solo la eliminación
+	 * de líneas.
+	 */
+	@State(Scope.Thread)
+	public static class Placed extends Fixture {
+
+		@Setup(Level.Invocation)
+		public void setUpInvocation() {
+			restore();
+			scratch.addPiece(position.type, position.x, position.y, position.rotation);
+		}
+	}
+
+	@Benchmark
+	public Board addPiece(Copied state) {
+		BoardFixtures.Position p = state.position;
+		state.scratch.addPiece(p.type, p.x, p.y, p.rotation);
+		return state.scratch;
+	}
+
+	@Benchmark
+	public int checkLines(Placed state) {
+		BoardFixtures.Position p = state.position;
+		return state.scratch.checkLines(p.type, p.y, p.rotation);
+	}
+
+	@Benchmark
+	public int addPieceAndCheckLines(Copied state) {
+		BoardFixtures.Position p = state.position;
+		state.scratch.addPiece(p.type, p.x, p.y, p.rotation);
+		return state.scratch.checkLines(p.type, p.y, p.rotation);
+	}
+
+}
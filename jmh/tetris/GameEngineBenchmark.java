@@ -0,0 +1,96 @@
+package tetris;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide el motor sobre los tableros de prueba: la rotación de la pieza actual y el
+ * ciclo completo de una caída instantánea (fijar la pieza, eliminar líneas y
+ * generar la siguiente).
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+
+	/**
+	 * Un motor en juego cuyo tablero es una copia del tablero de prueba. La pieza
+	 * gira sin parar en su sitio.
+	 */
+	@State(Scope.Thread)
+	public static class Rotating {
+
+		@Param({BoardFixtures.VACIO, BoardFixtures.MITAD, BoardFixtures.CASI_LLENO, BoardFixtures.BASURA})
+		public String fixture;
+
+		GameEngine engine;
+
+		@Setup
+		public void setUp() {
+			engine = new GameEngine(7L);
+			engine.reset();
+			engine.getBoard().copyFrom(BoardFixtures.create(fixture));
+		}
+	}
+
+	/**
+	 * Antes de cada caída, fuera de la medición, se empieza una partida nueva sobre
+	 * el tablero de prueba y se desplaza la pieza unas columnas al azar. Así cada
+	 * caída parte del mismo tablero y la partida nunca termina a medias.
+	 */
+	@State(Scope.Thread)
+	public static class Cycling {
+
+		@Param({BoardFixtures.VACIO, BoardFixtures.MITAD, BoardFixtures.CASI_LLENO, BoardFixtures.BASURA})
+		public String fixture;
+
+		Board board;
+		GameEngine engine;
+		Random moves;
+
+		@Setup(Level.Trial)
+		public void setUpTrial() {
+			board = BoardFixtures.create(fixture);
+			engine = new GameEngine(8L);
+			moves = new Random(9L);
+		}
+
+		@Setup(Level.Invocation)
+		public void setUpInvocation() {
+			engine.reset();
+			engine.getBoard().copyFrom(board);
+			int shift = moves.nextInt(9) - 4;
+			for(int s = 0; s < Math.abs(shift); s++) {
+				engine.applyInput((shift < 0) ? GameEngine.Input.LEFT : GameEngine.Input.RIGHT);
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean rotate(Rotating state) {
+		return state.engine.applyInput(GameEngine.Input.ROTATE_CW);
+	}
+
+	@Benchmark
+	public int lockClearSpawn(Cycling state) {
+		state.engine.applyInput(GameEngine.Input.HARD_DROP);
+		return state.engine.getScore();
+	}
+
+}
@@ -0,0 +1,55 @@
+package tetris;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide los márgenes (insets) de las piezas, que no dependen del tablero. Cada
+ * llamada lee los cuatro márgenes de una pieza y rotación elegidas al azar.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileTypeBenchmark {
+
+	private TileType[] types;
+	private int[] rotations;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(4L);
+		TileType[] values = TileType.values();
+		types = new TileType[BoardFixtures.POSITIONS];
+		rotations = new int[BoardFixtures.POSITIONS];
+		for(int i = 0; i < BoardFixtures.POSITIONS; i++) {
+			types[i] = values[random.nextInt(values.length)];
+			rotations[i] = random.nextInt(4);
+		}
+	}
+
+	@Benchmark
+	public int insets() {
+		next = (next + 1) & (BoardFixtures.POSITIONS - 1);
+		TileType type = types[next];
+		int rotation = rotations[next];
+		return type.getLeftInset(rotation) + type.getRightInset(rotation)
+				+ type.getTopInset(rotation) + type.getBottomInset(rotation);
+	}
+
+}
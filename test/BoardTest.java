@@ -0,0 +1,212 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BoardTest {
+
+	@Test
+	void clearsRowsThatAreNotAdjacent() {
+		Board board = new Board();
+		fillRow(board, 19, 0);
+		fillRow(board, 21, 0);
+		board.setTile(5, 18, TileType.TypeT);
+		board.setTile(6, 20, TileType.TypeS);
+		board.setTile(3, 10, TileType.TypeZ);
+
+		// Una I vertical en la columna 0, de la fila 18 a la 21
+		board.addPiece(TileType.TypeI, -2, 18, 1);
+		assertClears(board, TileType.TypeI, 18, 1, (1 << 19) | (1 << 21));
+		assertEquals(TileType.TypeS, board.getTile(6, 21));
+		assertEquals(TileType.TypeT, board.getTile(5, 20));
+		assertEquals(TileType.TypeZ, board.getTile(3, 12));
+	}
+
+	@Test
+	void clearsTheTopRow() {
+		Board board = new Board();
+		for(int col = 4; col < Board.COL_COUNT; col++) {
+			board.setTile(col, 0, TileType.TypeO);
+		}
+		board.setTile(2, 1, TileType.TypeL);
+
+		// Una I horizontal en la fila 0
+		board.addPiece(TileType.TypeI, 0, -1, 0);
+		assertClears(board, TileType.TypeI, -1, 0, 1);
+		assertEquals(TileType.TypeL, board.getTile(2, 1));
+	}
+
+	@Test
+	void clearsFourLines() {
+		Board board = new Board();
+		for(int row = 18; row < Board.ROW_COUNT; row++) {
+			fillRow(board, row, Board.COL_COUNT - 1);
+		}
+		board.setTile(4, 17, TileType.TypeJ);
+		board.setTile(4, 16, TileType.TypeT);
+
+		// Una I vertical en la última columna, de la fila 18 a la 21
+		board.addPiece(TileType.TypeI, Board.COL_COUNT - 3, 18, 1);
+		assertClears(board, TileType.TypeI, 18, 1, 0xF << 18);
+		assertEquals(TileType.TypeJ, board.getTile(4, 21));
+		assertEquals(TileType.TypeT, board.getTile(4, 20));
+
+		// Las filas vacías de arriba son arrays distintos
+		board.setTile(0, 0, TileType.TypeO);
+		for(int row = 1; row < 4; row++) {
+			assertNull(board.getTile(0, row));
+		}
+	}
+
+	@Test
+	void clearedRowsIsEmptyWhenNothingIsCleared() {
+		Board board = new Board();
+		fillRow(board, 21, 0);
+		board.addPiece(TileType.TypeI, -2, 18, 1);
+		board.checkLines(TileType.TypeI, 18, 1);
+		assertEquals(1 << 21, board.getClearedRows());
+
+		board.addPiece(TileType.TypeO, 4, 18, 0);
+		assertEquals(0, board.checkLines(TileType.TypeO, 18, 0));
+		assertEquals(0, board.getClearedRows());
+	}
+
+	@Test
+	void dropDistanceMatchesAScanUnderOverhangs() {
+		Random random = new Random(3);
+		for(int n = 0; n < 50; n++) {
+			Board board = randomBoard(random);
+			// Un saliente de la columna 0 a la 5, para meter piezas por debajo
+			int shelf = 8 + random.nextInt(8);
+			for(int col = 0; col < 6; col++) {
+				board.setTile(col, shelf, TileType.TypeZ);
+			}
+
+			for(TileType type : TileType.values()) {
+				for(int rotation = 0; rotation < 4; rotation++) {
+					for(int x = -4; x < Board.COL_COUNT; x++) {
+						for(int y = -4; y < Board.ROW_COUNT; y++) {
+							if(board.isValidAndEmpty(type, x, y, rotation)) {
+								int distance = 0;
+								while(fits(board, type, x, y + distance + 1, rotation)) {
+									distance++;
+								}
+								assertEquals(distance, board.getDropDistance(type, x, y, rotation),
+										type + " en " + x + "," + y + " con rotación " + rotation);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void isValidAndEmptyMatchesACellCheckAtTheWalls() {
+		Random random = new Random(5);
+		List<Board> boards = new ArrayList<>();
+		boards.add(new Board());
+		for(int n = 0; n < 20; n++) {
+			boards.add(randomBoard(random));
+		}
+
+		for(Board board : boards) {
+			for(TileType type : TileType.values()) {
+				for(int rotation = 0; rotation < 4; rotation++) {
+					for(int x = -5; x <= Board.COL_COUNT; x++) {
+						for(int y = -5; y <= Board.ROW_COUNT; y++) {
+							assertEquals(fits(board, type, x, y, rotation), board.isValidAndEmpty(type, x, y, rotation),
+									type + " en " + x + "," + y + " con rotación " + rotation);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Limpia las filas llenas que cubre la pieza y comprueba que el tablero queda como
+	 * si se hubieran quitado una a una.
+	 */
+	private static void assertClears(Board board, TileType type, int y, int rotation, int expectedRows) {
+		List<TileType[]> expected = new ArrayList<>();
+		for(int row = 0; row < Board.ROW_COUNT; row++) {
+			TileType[] line = new TileType[Board.COL_COUNT];
+			boolean isFull = true;
+			for(int col = 0; col < Board.COL_COUNT; col++) {
+				line[col] = board.getTile(col, row);
+				isFull &= line[col] != null;
+			}
+			if(!isFull) {
+				expected.add(line);
+			}
+		}
+		while(expected.size() < Board.ROW_COUNT) {
+			expected.add(0, new TileType[Board.COL_COUNT]);
+		}
+
+		assertEquals(Integer.bitCount(expectedRows), board.checkLines(type, y, rotation));
+		assertEquals(expectedRows, board.getClearedRows());
+		for(int col = 0; col < Board.COL_COUNT; col++) {
+			int surface = Board.ROW_COUNT;
+			for(int row = Board.ROW_COUNT - 1; row >= 0; row--) {
+				TileType tile = expected.get(row)[col];
+				assertEquals(tile, board.getTile(col, row), "columna " + col + ", fila " + row);
+				assertEquals(tile != null, board.isOccupied(col, row), "columna " + col + ", fila " + row);
+				if(tile != null) {
+					surface = row;
+				}
+			}
+			assertEquals(surface, board.getSurface(col), "columna " + col);
+		}
+	}
+
+	/**
+	 * Si la pieza cabe, mirando cada una de sus casillas.
+	 */
+	private static boolean fits(Board board, TileType type, int x, int y, int rotation) {
+		for(int row = 0; row < type.getDimension(); row++) {
+			for(int col = 0; col < type.getDimension(); col++) {
+				if(type.isTile(col, row, rotation)) {
+					int boardX = x + col;
+					int boardY = y + row;
+					if(boardX < 0 || boardX >= Board.COL_COUNT || boardY < 0 || boardY >= Board.ROW_COUNT
+							|| board.isOccupied(boardX, boardY)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Llena una fila menos una columna.
+	 */
+	private static void fillRow(Board board, int row, int gap) {
+		for(int col = 0; col < Board.COL_COUNT; col++) {
+			if(col != gap) {
+				board.setTile(col, row, TileType.TypeO);
+			}
+		}
+	}
+
+	/**
+	 * Un tablero con casillas sueltas en la mitad de abajo, con huecos y salientes.
+	 */
+	private static Board randomBoard(Random random) {
+		Board board = new Board();
+		for(int row = Board.ROW_COUNT / 2; row < Board.ROW_COUNT; row++) {
+			for(int col = 0; col < Board.COL_COUNT; col++) {
+				if(random.nextInt(3) == 0) {
+					board.setTile(col, row, TileType.TypeL);
+				}
+			}
+		}
+		return board;
+	}
+}
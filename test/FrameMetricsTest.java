@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FrameMetricsTest {
+
+	@Test
+	void summaryVersionDoesNotLoseUpdates() throws InterruptedException {
+		FrameMetrics metrics = new FrameMetrics(false);
+		int before = metrics.getSummaryVersion();
+		Runnable toggle = () -> {
+			for(int i = 0; i < 100000; i++) {
+				metrics.setEnabled(false);
+			}
+		};
+		Thread a = new Thread(toggle);
+		Thread b = new Thread(toggle);
+		a.start();
+		b.start();
+		a.join();
+		b.join();
+		assertEquals(before + 200000, metrics.getSummaryVersion());
+	}
+
+	@Test
+	void summaryOnlyShowsTheLastPeriod() throws InterruptedException {
+		FrameMetrics metrics = new FrameMetrics(true);
+		metrics.endFrame(0, 0);
+
+		// Una medida de 50 ms en el primer periodo
+		metrics.record(FrameMetrics.Phase.PAINT_BOARD, System.nanoTime() - 50000000L);
+		endPeriod(metrics);
+		assertTrue(maxMillis(metrics, FrameMetrics.Phase.PAINT_BOARD) >= 50.0);
+
+		// En el segundo solo hay medidas cortas, y el máximo de la partida sigue ahí
+		metrics.record(FrameMetrics.Phase.PAINT_BOARD, System.nanoTime() - 1000000L);
+		endPeriod(metrics);
+		assertTrue(maxMillis(metrics, FrameMetrics.Phase.PAINT_BOARD) < 10.0);
+		assertTrue(metrics.getPhase(FrameMetrics.Phase.PAINT_BOARD).getMax() >= 50000000L);
+
+		// En el tercero no se pinta nada
+		endPeriod(metrics);
+		assertEquals(0.0, maxMillis(metrics, FrameMetrics.Phase.PAINT_BOARD));
+	}
+
+	/**
+	 * Cuenta fotogramas hasta que se recalcula el resumen.
+	 */
+	private static void endPeriod(FrameMetrics metrics) throws InterruptedException {
+		int version = metrics.getSummaryVersion();
+		while(metrics.getSummaryVersion() == version) {
+			Thread.sleep(20);
+			metrics.endFrame(0, 0);
+		}
+	}
+
+	/**
+	 * Lee el máximo de una fase en la línea del resumen, en milisegundos.
+	 */
+	private static double maxMillis(FrameMetrics metrics, FrameMetrics.Phase phase) {
+		String[] columns = metrics.getSummary()[phase.ordinal() + 2].trim().split("\\s+");
+		return Double.parseDouble(columns[columns.length - 1].replace(',', '.'));
+	}
+
+}
@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class GameEngineTest {
+
+	@Test
+	void hardDropLeavesTheNewPieceAtItsSpawnRow() {
+		GameEngine engine = new GameEngine(1L);
+		engine.reset();
+
+		assertTrue(engine.step(GameEngine.Input.HARD_DROP));
+		assertEquals(engine.getPieceType().getSpawnRow(), engine.getPieceRow());
+		assertEquals(1, engine.getPieces());
+	}
+
+	@Test
+	void otherInputsLetThePieceFall() {
+		GameEngine engine = new GameEngine(1L);
+		engine.reset();
+		int row = engine.getPieceRow();
+
+		engine.step(GameEngine.Input.LEFT);
+		assertEquals(row + 1, engine.getPieceRow());
+	}
+
+	@Test
+	void sameSeedPlaysTheSameGame() {
+		GameEngine a = new GameEngine(42L);
+		GameEngine b = new GameEngine(42L);
+		a.reset();
+		b.reset();
+		GameEngine.Input[] inputs = GameEngine.Input.values();
+		for(int i = 0; i < 2000 && !a.isGameOver(); i++) {
+			GameEngine.Input input = inputs[i % inputs.length];
+			assertEquals(a.step(input), b.step(input));
+			assertEquals(a.getPieceRow(), b.getPieceRow());
+		}
+		assertEquals(a.getScore(), b.getScore());
+		assertEquals(a.getPieces(), b.getPieces());
+	}
+
+}
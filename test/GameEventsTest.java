@@ -0,0 +1,28 @@
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+
+class GameEventsTest {
+
+	// Sin grabación no se crea ningún evento
+	@Test
+	void createsNothingWhileNotRecording() {
+		assertNull(GameEvents.beginFrame());
+		assertNull(GameEvents.beginServerRead());
+	}
+
+	// Con una grabación en marcha, solo los eventos que tenga activados
+	@Test
+	void createsTheEventsOfARunningRecording() {
+		try (Recording recording = new Recording()) {
+			recording.enable("tetris.Frame");
+			recording.disable("tetris.ServerRead");
+			recording.start();
+			assertNotNull(GameEvents.beginFrame());
+			assertNull(GameEvents.beginServerRead());
+		}
+	}
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class LeaderboardIndexTest {
+
+    @Test
+    void keepsTheBestScoreOfEachPlayer() {
+        LeaderboardIndex index = new LeaderboardIndex();
+        assertTrue(index.upsert(new Jugador("ana", 10)));
+        assertFalse(index.upsert(new Jugador("ana", 5)));
+        assertFalse(index.upsert(new Jugador("ana", 10)));
+        assertTrue(index.upsert(new Jugador("ana", 20)));
+        assertEquals(1, index.size());
+        assertEquals(20, index.get("ana").getScore());
+    }
+
+    @Test
+    void ranksTiesByName() {
+        LeaderboardIndex index = new LeaderboardIndex();
+        index.upsert(new Jugador("d", 5));
+        index.upsert(new Jugador("b", 5));
+        index.upsert(new Jugador("z", 9));
+        index.upsert(new Jugador("a", 1));
+        assertEquals(1, index.rankOf("z"));
+        assertEquals(2, index.rankOf("b"));
+        assertEquals(3, index.rankOf("d"));
+        assertEquals(4, index.rankOf("a"));
+        assertEquals(0, index.rankOf("nadie"));
+        assertEquals(List.of("z", "b", "d", "a"), names(index.snapshot()));
+        assertEquals(List.of("b", "d"), names(index.range(2, 5)));
+        assertEquals(List.of("z", "b"), names(index.top(2)));
+    }
+
+    // Muchos hilos actualizan a la vez; al final el índice tiene que coincidir con un
+    // mapa de referencia que se queda con el máximo de cada nombre
+    @Test
+    void concurrentUpsertsMatchAReference() throws InterruptedException {
+        LeaderboardIndex index = new LeaderboardIndex();
+        Map<String, Integer> reference = new ConcurrentHashMap<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50000; i++) {
+                    String nombre = "p" + random.nextInt(5000);
+                    // Puntuaciones negativas también, y muchos empates
+                    int score = random.nextInt(2000) - 1000;
+                    index.upsert(new Jugador(nombre, score));
+                    reference.merge(nombre, score, Math::max);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertMatches(reference, index);
+    }
+
+    @Test
+    void loadMatchesUpserts() {
+        Random random = new Random(1);
+        List<Jugador> jugadores = new ArrayList<>();
+        Map<String, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            int score = random.nextInt();
+            jugadores.add(new Jugador("p" + i, score));
+            reference.put("p" + i, score);
+        }
+
+        LeaderboardIndex index = new LeaderboardIndex();
+        index.load(jugadores);
+        assertMatches(reference, index);
+
+        // Con el índice ya cargado, load() se queda con el máximo como upsert()
+        index.load(List.of(new Jugador("p0", Integer.MAX_VALUE), new Jugador("nuevo", 0)));
+        reference.put("p0", Integer.MAX_VALUE);
+        reference.put("nuevo", 0);
+        assertMatches(reference, index);
+        assertEquals(1, index.rankOf("p0"));
+    }
+
+    private static void assertMatches(Map<String, Integer> reference, LeaderboardIndex index) {
+        List<Jugador> expected = reference.entrySet().stream()
+                .map(e -> new Jugador(e.getKey(), e.getValue()))
+                .sorted(LeaderboardIndex.ORDER)
+                .collect(Collectors.toList());
+        List<Jugador> snapshot = index.snapshot();
+        assertEquals(expected.size(), index.size());
+        assertEquals(names(expected), names(snapshot));
+        for (int i = 0; i < expected.size(); i++) {
+            Jugador jugador = expected.get(i);
+            assertEquals(jugador.getScore(), snapshot.get(i).getScore());
+            assertEquals(i + 1, index.rankOf(jugador.getNombre()), jugador.getNombre());
+        }
+    }
+
+    private static List<String> names(List<Jugador> jugadores) {
+        return jugadores.stream().map(Jugador::getNombre).collect(Collectors.toList());
+    }
+}
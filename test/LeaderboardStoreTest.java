@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeaderboardStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversTheBestScores() throws IOException {
+        LeaderboardIndex index = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, index)) {
+            add(index, store, new Jugador("ana", 10), new Jugador("bea", 7));
+            add(index, store, new Jugador("ana", 30));
+        }
+
+        LeaderboardIndex recovered = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, recovered)) {
+            assertEquals(entries(index.snapshot()), entries(recovered.snapshot()));
+        }
+    }
+
+    // Una escritura cortada a medias se descarta y el registro se puede seguir usando
+    @Test
+    void dropsATornTail() throws IOException {
+        LeaderboardIndex index = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, index)) {
+            add(index, store, new Jugador("ana", 10));
+        }
+        Path log = dir.resolve("leaderboard-0.log");
+        long size = Files.size(log);
+        Files.write(log, new byte[] {0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        LeaderboardIndex recovered = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, recovered)) {
+            assertEquals(size, Files.size(log));
+            add(recovered, store, new Jugador("bea", 5));
+        }
+
+        LeaderboardIndex again = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, again)) {
+            assertEquals(List.of("ana=10", "bea=5"), entries(again.snapshot()));
+        }
+    }
+
+    // Con un umbral pequeño se escriben instantáneas y se borran los registros que ya incluyen
+    @Test
+    void recoversFromASnapshotAndTheNewerLogs() throws IOException {
+        LeaderboardIndex index = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, index, 256)) {
+            for (int i = 0; i < 200; i++) {
+                add(index, store, new Jugador("jugador" + (i % 50), i));
+            }
+        }
+        // close() espera a la instantánea que esté en marcha
+        assertTrue(Files.exists(dir.resolve("leaderboard.snap")));
+        assertFalse(Files.exists(dir.resolve("leaderboard-0.log")));
+
+        LeaderboardIndex recovered = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, recovered)) {
+            assertEquals(entries(index.snapshot()), entries(recovered.snapshot()));
+        }
+    }
+
+    // Un registro de varios trozos del búfer de lectura, con entradas partidas entre
+    // dos trozos y una escritura cortada al final
+    @Test
+    void replaysALogLongerThanTheReadBuffer() throws IOException {
+        LeaderboardIndex index = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, index)) {
+            for (int i = 0; i < 50; i++) {
+                Jugador[] lote = new Jugador[200];
+                for (int j = 0; j < lote.length; j++) {
+                    lote[j] = new Jugador("jugador" + "x".repeat(j % 37) + (i * lote.length + j), i * j);
+                }
+                add(index, store, lote);
+            }
+        }
+        Path log = dir.resolve("leaderboard-0.log");
+        long size = Files.size(log);
+        assertTrue(size > 4 * 64 * 1024);
+        Files.write(log, new byte[] {0, 0, 0, 9, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        LeaderboardIndex recovered = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, recovered)) {
+            assertEquals(entries(index.snapshot()), entries(recovered.snapshot()));
+            assertEquals(size, Files.size(log));
+        }
+    }
+
+    // Dos procesos no pueden compartir el directorio
+    @Test
+    void locksTheDirectory() throws IOException {
+        try (LeaderboardStore store = LeaderboardStore.open(dir, new LeaderboardIndex())) {
+            assertThrows(IOException.class, () -> LeaderboardStore.open(dir, new LeaderboardIndex()));
+        }
+        LeaderboardStore.open(dir, new LeaderboardIndex()).close();
+    }
+
+    // Si falla una escritura, ni ese grupo ni los siguientes se confirman
+    @Test
+    void failsEveryAppendAfterAWriteError() throws IOException {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full));
+        Files.createSymbolicLink(dir.resolve("leaderboard-0.log"), full);
+
+        LeaderboardIndex index = new LeaderboardIndex();
+        try (LeaderboardStore store = LeaderboardStore.open(dir, index)) {
+            assertThrows(IOException.class, () -> store.append(List.of(new Jugador("ana", 10))));
+            IOException e = assertThrows(IOException.class, () -> store.append(List.of(new Jugador("bea", 5))));
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    // Igual que Leaderboard: el índice primero y después el registro
+    private static void add(LeaderboardIndex index, LeaderboardStore store, Jugador... jugadores) throws IOException {
+        List<Jugador> cambios = new ArrayList<>();
+        for (Jugador jugador : jugadores) {
+            if (index.upsert(jugador)) {
+                cambios.add(jugador);
+            }
+        }
+        store.append(cambios);
+    }
+
+    private static List<String> entries(List<Jugador> jugadores) {
+        List<String> entries = new ArrayList<>();
+        for (Jugador jugador : jugadores) {
+            entries.add(jugador.getNombre() + "=" + jugador.getScore());
+        }
+        return entries;
+    }
+}
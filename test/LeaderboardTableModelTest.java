@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+class LeaderboardTableModelTest {
+
+    // Los cambios que llegan mientras se toma la instantánea y después acaban en las filas
+    @Test
+    void convergesWithTheIndex() throws Exception {
+        LeaderboardIndex index = new LeaderboardIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.upsert(new Jugador("jugador" + i, i));
+        }
+        LeaderboardTableModel model = new LeaderboardTableModel(index);
+        SwingUtilities.invokeAndWait(model::open);
+
+        // Pocos cambios, que se aplican uno a uno
+        index.upsert(new Jugador("jugador3", 5000));
+        index.upsert(new Jugador("nuevo", 7));
+        waitForRows(model, index);
+
+        // Demasiados para aplicarlos uno a uno: se vuelve a tomar la instantánea
+        for (int i = 0; i < 2000; i++) {
+            index.upsert(new Jugador("jugador" + (i % 1500), 10000 + i));
+        }
+        waitForRows(model, index);
+
+        SwingUtilities.invokeAndWait(model::close);
+        AtomicReference<Integer> rows = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> rows.set(model.getRowCount()));
+        assertEquals(0, rows.get());
+    }
+
+    private static void waitForRows(LeaderboardTableModel model, LeaderboardIndex index) throws Exception {
+        List<String> expected = entries(index.snapshot());
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (true) {
+            AtomicReference<List<String>> actual = new AtomicReference<>();
+            SwingUtilities.invokeAndWait(() -> actual.set(rows(model)));
+            if (expected.equals(actual.get())) {
+                return;
+            }
+            assertTrue(System.nanoTime() < deadline, "Las filas no coinciden con el índice");
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<String> rows(LeaderboardTableModel model) {
+        List<String> rows = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            assertEquals(row + 1, model.getValueAt(row, 0));
+            rows.add(model.getValueAt(row, 1) + "=" + model.getValueAt(row, 2));
+        }
+        return rows;
+    }
+
+    private static List<String> entries(List<Jugador> jugadores) {
+        List<String> entries = new ArrayList<>();
+        for (Jugador jugador : jugadores) {
+            entries.add(jugador.getNombre() + "=" + jugador.getScore());
+        }
+        return entries;
+    }
+}
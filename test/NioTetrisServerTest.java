@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NioTetrisServerTest {
+
+    @TempDir
+    Path dir;
+
+    private final ServerMetrics metrics = new ServerMetrics();
+    private NioTetrisServer server;
+    private Thread thread;
+    private int port;
+
+    // Un servidor con dos bucles y la tabla guardándose en disco
+    @BeforeEach
+    void startServer() throws Exception {
+        Leaderboard.abrir(dir);
+        try (ServerSocket free = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = free.getLocalPort();
+        }
+        server = new NioTetrisServer(2, metrics);
+        thread = new Thread(() -> {
+            try {
+                server.start(port);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+        // Que el servidor esté escuchando antes de conectar
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (true) {
+            try (Socket probe = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                break;
+            } catch (IOException e) {
+                assertTrue(System.nanoTime() < deadline, "El servidor no arrancó");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+        thread.join(5000);
+        Leaderboard.cerrar();
+    }
+
+    // La respuesta llega cuando las puntuaciones ya están en el registro
+    @Test
+    void textRepliesOnceTheScoresAreSaved() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("nio-ana\n10\nnio-bea\n7\n.\n".getBytes(StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("Recibido", in.readLine());
+        }
+        assertTrue(Files.size(dir.resolve("leaderboard-0.log")) > 0);
+        assertEquals(10, Leaderboard.getIndex().get("nio-ana").getScore());
+        assertEquals(7, Leaderboard.getIndex().get("nio-bea").getScore());
+    }
+
+    // Con la versión 2, cada lote se confirma cuando se ha guardado
+    @Test
+    void binaryAcknowledgesEveryScore() throws Exception {
+        ScoreSender sender = new ScoreSender(() -> "127.0.0.1", port);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sender.submit(new Jugador("nio-jugador" + i, i)));
+        }
+        sender.close(5000);
+        assertEquals(5, sender.getSent());
+        assertEquals(0, sender.getFailures());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, Leaderboard.getIndex().get("nio-jugador" + i).getScore());
+        }
+    }
+}
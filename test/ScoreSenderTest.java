@@ -0,0 +1,149 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScoreSenderTest {
+    // Cuánto tarda el servidor falso en confirmar cada lote
+    private static final long ACK_DELAY = 500;
+
+    private ServerSocket serverSocket;
+    private Thread server;
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicBoolean isEnded = new AtomicBoolean();
+
+    // Un servidor con la versión 2 del protocolo binario que tarda en confirmar
+    @BeforeEach
+    void startServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        server = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(256);
+                buffer.limit(0);
+                ScoreProtocol.FrameDecoder decoder = new ScoreProtocol.FrameDecoder();
+                byte[] frame = new byte[ScoreProtocol.MAX_ENCODED_LENGTH];
+
+                ScoreProtocol.readHandshake(in, buffer, decoder);
+                out.write(frame, 0, ScoreProtocol.encodeHandshake(frame, 0, ScoreProtocol.VERSION));
+                while (ScoreProtocol.readFrame(in, buffer, decoder)) {
+                    if (decoder.getType() == ScoreProtocol.END) {
+                        isEnded.set(true);
+                        out.write(frame, 0, ScoreProtocol.encodeAck(frame, 0, received.get()));
+                        return;
+                    }
+                    received.incrementAndGet();
+                    if (!buffer.hasRemaining() && in.available() == 0) {
+                        Thread.sleep(ACK_DELAY);
+                        out.write(frame, 0, ScoreProtocol.encodeAck(frame, 0, received.get()));
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // La prueba comprueba lo que llegó
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        serverSocket.close();
+        server.join(5000);
+    }
+
+    @Test
+    void closeWaitsForTheBatchInFlight() throws Exception {
+        ScoreSender sender = new ScoreSender(() -> "127.0.0.1", serverSocket.getLocalPort());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sender.submit(new Jugador("jugador" + i, i)));
+        }
+        // Que el hilo de envío saque el lote de la cola antes de cerrar
+        while (sender.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+
+        sender.close(5000);
+        assertEquals(3, sender.getSent());
+        assertEquals(3, received.get());
+        server.join(5000);
+        assertTrue(isEnded.get(), "la conexión se cierra con END después del lote");
+    }
+
+    // Un servidor que solo habla el protocolo de texto y corta la primera conexión sin
+    // responder: el lote no puede contar como enviado, y se reintenta en otra conexión
+    @Test
+    void retriesABatchTheTextServerDropped() throws Exception {
+        List<String> saved = Collections.synchronizedList(new ArrayList<>());
+        Thread text;
+        try (ServerSocket textServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            text = new Thread(() -> {
+                try {
+                    try (Socket socket = textServer.accept()) {
+                        // Lee una línea y se cae
+                        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                    }
+                    // Las siguientes, como TetrisServer: hasta "." y confirma
+                    while (true) {
+                        try (Socket socket = textServer.accept()) {
+                            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                            String line;
+                            while ((line = in.readLine()) != null && !".".equals(line)) {
+                                saved.add(line + "=" + in.readLine());
+                            }
+                            socket.getOutputStream().write("Recibido\n".getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+                } catch (IOException e) {
+                    // La prueba comprueba lo que llegó
+                }
+            });
+            text.start();
+
+            System.setProperty("tetris.protocol", "text");
+            try {
+                ScoreSender sender = new ScoreSender(() -> "127.0.0.1", textServer.getLocalPort());
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(sender.submit(new Jugador("jugador" + i, i)));
+                }
+                while (sender.getSent() < 3 && sender.getFailures() < 5) {
+                    Thread.sleep(10);
+                }
+                sender.close(5000);
+                assertEquals(3, sender.getSent());
+                assertTrue(sender.getFailures() >= 1);
+            } finally {
+                System.clearProperty("tetris.protocol");
+            }
+        }
+        text.join(5000);
+        assertEquals(List.of("jugador0=0", "jugador1=1", "jugador2=2"), saved);
+    }
+
+    @Test
+    void closeReturnsAtOnceWhenIdle() throws Exception {
+        ScoreSender sender = new ScoreSender(() -> "127.0.0.1", serverSocket.getLocalPort());
+        long start = System.nanoTime();
+        sender.close(5000);
+        assertTrue(System.nanoTime() - start < 1000000000L);
+        assertEquals(0, sender.getSent());
+    }
+}